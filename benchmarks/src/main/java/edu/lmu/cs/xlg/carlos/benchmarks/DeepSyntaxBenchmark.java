@@ -0,0 +1,93 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.Parser;
+import edu.lmu.cs.xlg.util.DiagnosticSink;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * The cost of parsing inputs that are long or deeply nested in one direction: a statement whose
+ * target and source are long <code>a.b[c].b[c]...</code> chains, a call nested in the argument
+ * of a call, a subscript nested in the index of a subscript, and a function declared in the
+ * body of a function.  Parsing time should grow linearly with the size of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepSyntaxBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"chain-1000", "chain-10000", "calls-20", "calls-200", "subscripts-20",
+            "subscripts-200", "functions-20", "functions-200"})
+        public String program;
+
+        String source;
+        Log log;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            int dash = program.indexOf('-');
+            source = source(program.substring(0, dash),
+                Integer.parseInt(program.substring(dash + 1)));
+            log = new Log("Carlos", (DiagnosticSink) null);
+        }
+    }
+
+    @Benchmark
+    public Program parse(Input input) {
+        return new Parser(Programs.stream(input.source)).parse(input.log);
+    }
+
+    /**
+     * Returns a program of the given shape: for a chain, the size is the number of selectors in
+     * each chain, and for the other shapes it is the depth of nesting.  Nesting is kept to a few
+     * hundred levels, as the parser's recursion overflows a default-sized thread stack well
+     * before a thousand.
+     */
+    static String source(String shape, int size) {
+        if (shape.equals("chain")) {
+            StringBuilder chain = new StringBuilder("a");
+            for (int i = 0; i < size / 2; i++) {
+                chain.append(".b[c]");
+            }
+            return chain + " = " + chain + ";\n";
+        } else if (shape.equals("calls")) {
+            return "x = " + nest("f(", "1", ")", size) + ";\n";
+        } else if (shape.equals("subscripts")) {
+            return nest("a[", "1", "]", size) + " = 1;\n";
+        } else if (shape.equals("functions")) {
+            return nest("void f() {\n", "", "}\n", size);
+        }
+        throw new IllegalArgumentException("No such shape: " + shape);
+    }
+
+    private static String nest(String open, String middle, String close, int depth) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            result.append(open);
+        }
+        result.append(middle);
+        for (int i = 0; i < depth; i++) {
+            result.append(close);
+        }
+        return result.toString();
+    }
+}
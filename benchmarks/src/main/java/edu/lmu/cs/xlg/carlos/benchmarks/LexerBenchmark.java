@@ -0,0 +1,90 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.syntax.Lexer;
+import edu.lmu.cs.xlg.carlos.syntax.ParserConstants;
+import edu.lmu.cs.xlg.carlos.syntax.ParserTokenManager;
+
+/**
+ * Tokens per second of the token manager JavaCC generates, of the hand-written lexer making the
+ * same tokens, and of the hand-written lexer only finding the kind and bounds of each token.
+ * Each operation lexes a whole program; the <code>tokens</code> counter gives the rate in
+ * tokens.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"everything", "example", "library", "synthetic-100", "synthetic-1000"})
+        public String program;
+
+        String source;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            source = Programs.source(program);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counter {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            tokens = 0;
+        }
+    }
+
+    @Benchmark
+    public int generated(Input input, Counter counter) {
+        return count(new ParserTokenManager(Programs.stream(input.source)), counter);
+    }
+
+    @Benchmark
+    public int handWritten(Input input, Counter counter) {
+        return count(new Lexer(Programs.stream(input.source)), counter);
+    }
+
+    @Benchmark
+    public int handWrittenBoundsOnly(Input input, Counter counter) {
+        Lexer lexer = new Lexer(Programs.stream(input.source));
+        int count = 0;
+        while (lexer.next() != ParserConstants.EOF) {
+            count++;
+        }
+        counter.tokens += count;
+        return count;
+    }
+
+    private static int count(ParserTokenManager tokenManager, Counter counter) {
+        int count = 0;
+        while (tokenManager.getNextToken().kind != ParserConstants.EOF) {
+            count++;
+        }
+        counter.tokens += count;
+        return count;
+    }
+}
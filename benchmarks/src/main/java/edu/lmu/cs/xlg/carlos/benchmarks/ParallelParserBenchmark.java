@@ -0,0 +1,82 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.ParallelParser;
+import edu.lmu.cs.xlg.carlos.syntax.ParserPool;
+import edu.lmu.cs.xlg.util.DiagnosticSink;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * The time to parse large programs with one parser and with their top-level statements cut
+ * into pieces parsed on as many threads as there are processors.  Each parse registers its
+ * entities in a new registry, as a compilation does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelParserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"synthetic-1000", "synthetic-5000", "synthetic-20000"})
+        public String program;
+
+        String source;
+        Log log;
+        ExecutorService executor;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            source = Programs.source(program);
+            log = new Log("Carlos", (DiagnosticSink) null);
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+
+        @TearDown(Level.Trial)
+        public void shutDown() {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Program serial(Input input) {
+        EntityRegistry previous = new EntityRegistry().attach();
+        try {
+            return ParserPool.parse(Programs.stream(input.source), input.log);
+        } finally {
+            EntityRegistry.restore(previous);
+        }
+    }
+
+    @Benchmark
+    public Program inPieces(Input input) {
+        EntityRegistry previous = new EntityRegistry().attach();
+        try {
+            return ParallelParser.parse(Programs.stream(input.source), input.log, input.executor);
+        } finally {
+            EntityRegistry.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.Parser;
+import edu.lmu.cs.xlg.carlos.syntax.ParserPool;
+import edu.lmu.cs.xlg.util.DiagnosticSink;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * The cost of parsing small programs, as the batch compiler and the compile server do many times
+ * over on the same threads, with a new parser for each program and with the thread's pooled
+ * parser.  Run with <code>-prof gc</code> to compare the bytes allocated per parse.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({"hello", "records", "example", "mutual"})
+        public String program;
+
+        String source;
+        Log log;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            source = Programs.source(program);
+            log = new Log("Carlos", (DiagnosticSink) null);
+        }
+    }
+
+    @Benchmark
+    public Program newParser(Input input) {
+        return new Parser(Programs.stream(input.source)).parse(input.log);
+    }
+
+    @Benchmark
+    public Program pooledParser(Input input) {
+        return ParserPool.parse(Programs.stream(input.source), input.log);
+    }
+}
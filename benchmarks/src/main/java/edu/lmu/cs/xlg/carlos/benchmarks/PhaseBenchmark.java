@@ -0,0 +1,143 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.Compiler;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.translators.CarlosToJavaScriptTranslator;
+
+/**
+ * Throughput of each phase of the compiler, and of the whole pipeline, on each benchmark input.
+ *
+ * Semantic analysis and optimization change the program they work on, so their benchmarks get
+ * a freshly prepared program before every invocation, and only the phase itself is measured.
+ * Translation leaves the program alone, so its program is prepared once.  Run with
+ * <code>-prof gc</code> to see the bytes allocated per operation alongside the operations per
+ * second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    /**
+     * The source text of the program being compiled.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"hello", "aggregates", "arrays", "everything", "example", "for", "incdec",
+            "library", "list", "mutual", "records", "synthetic-100", "synthetic-1000"})
+        public String program;
+
+        String source;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            source = Programs.source(program);
+            Compiler compiler = Programs.quietCompiler();
+            compiler.produceOptimizedSemanticGraph(Programs.stream(source));
+            if (compiler.getErrorCount() > 0) {
+                throw new IllegalStateException(program + " does not compile");
+            }
+        }
+    }
+
+    /**
+     * A program that has been parsed but not analyzed, along with the compiler that parsed it.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        Compiler compiler;
+        Program program;
+
+        @Setup(Level.Invocation)
+        public void parse(Input input) throws IOException {
+            compiler = Programs.quietCompiler();
+            program = compiler.checkSyntax(Programs.stream(input.source));
+        }
+    }
+
+    /**
+     * A program that has been analyzed but not optimized, along with the compiler that
+     * analyzed it.
+     */
+    @State(Scope.Thread)
+    public static class Analyzed {
+        Compiler compiler;
+        Program program;
+
+        @Setup(Level.Invocation)
+        public void analyze(Input input) throws IOException {
+            compiler = Programs.quietCompiler();
+            program = compiler.checkSemantics(Programs.stream(input.source));
+        }
+    }
+
+    /**
+     * A fully optimized program, and a writer that discards what is written to it.
+     */
+    @State(Scope.Thread)
+    public static class Optimized {
+        Program program;
+        PrintWriter writer;
+
+        @Setup(Level.Trial)
+        public void optimize(Input input) throws IOException {
+            program = Programs.quietCompiler().produceOptimizedSemanticGraph(
+                Programs.stream(input.source));
+            writer = discardingWriter();
+        }
+    }
+
+    @Benchmark
+    public Program parse(Input input) throws IOException {
+        return Programs.quietCompiler().checkSyntax(Programs.stream(input.source));
+    }
+
+    @Benchmark
+    public Program analyze(Parsed parsed) throws IOException {
+        return parsed.compiler.checkSemantics(parsed.program);
+    }
+
+    @Benchmark
+    public Program optimize(Analyzed analyzed) {
+        return analyzed.compiler.optimize(analyzed.program);
+    }
+
+    @Benchmark
+    public void translate(Optimized optimized) {
+        new CarlosToJavaScriptTranslator().translateProgram(optimized.program, optimized.writer);
+    }
+
+    @Benchmark
+    public void generateJavaScript(Input input) throws IOException {
+        Programs.quietCompiler().generateJavaScript(Programs.stream(input.source),
+            discardingWriter());
+    }
+
+    private static PrintWriter discardingWriter() {
+        return new PrintWriter(new Writer() {
+            public void write(char[] buffer, int offset, int length) {}
+            public void flush() {}
+            public void close() {}
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.ParserPool;
+import edu.lmu.cs.xlg.carlos.syntax.PipelinedLexer;
+import edu.lmu.cs.xlg.util.DiagnosticSink;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * The time to parse programs of a few megabytes with the lexer on the parser's thread and on a
+ * thread of its own, as the compiler does with <code>-pipeline</code> and no worker threads.
+ * The pipelined parse can only win with a second processor to lex on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"synthetic-2500", "synthetic-5000", "synthetic-20000"})
+        public String program;
+
+        String source;
+        Log log;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            source = Programs.source(program);
+            log = new Log("Carlos", (DiagnosticSink) null);
+        }
+    }
+
+    @Benchmark
+    public Program serial(Input input) {
+        return ParserPool.parse(Programs.stream(input.source), input.log);
+    }
+
+    @Benchmark
+    public Program pipelined(Input input) {
+        return PipelinedLexer.parse(Programs.stream(input.source), input.log);
+    }
+}
@@ -0,0 +1,65 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import edu.lmu.cs.xlg.carlos.Compiler;
+import edu.lmu.cs.xlg.carlos.ProgramGenerator;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+
+/**
+ * The inputs of the benchmarks, by name.  A name is either the base name of one of the test
+ * programs of the compiler, which are packaged with the benchmarks, or "synthetic-n", for a
+ * program with n functions made by the {@link ProgramGenerator} with its other settings left
+ * at their defaults.
+ */
+public class Programs {
+
+    private static final String SYNTHETIC = "synthetic-";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Returns the source text of the program with the given name.
+     */
+    public static String source(String name) throws IOException {
+        if (name.startsWith(SYNTHETIC)) {
+            int functions = Integer.parseInt(name.substring(SYNTHETIC.length()));
+            return new ProgramGenerator().functions(functions).generate();
+        }
+        InputStream in = Programs.class.getResourceAsStream("/programs/" + name + ".carlos");
+        if (in == null) {
+            throw new IOException("No such program: " + name);
+        }
+        Reader reader = new InputStreamReader(in, UTF8);
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            for (int n; (n = reader.read(buffer)) > 0;) {
+                text.append(buffer, 0, n);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns a stream over the given source text, for handing to a compiler.
+     */
+    public static SourceStream stream(String source) {
+        return new SourceStream(CharBuffer.wrap(source));
+    }
+
+    /**
+     * Returns a compiler that writes no messages.
+     */
+    public static Compiler quietCompiler() {
+        Compiler compiler = new Compiler();
+        compiler.setQuiet(true);
+        return compiler;
+    }
+}
@@ -0,0 +1,100 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.Compiler;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+
+/**
+ * The time to compile generated programs of growing size, for charting against the number of
+ * functions, with the generator's other settings at their defaults.  The compiler works on the
+ * given number of threads, so runs with different numbers of threads show how the concurrent
+ * phases scale with cores.  Semantic analysis changes the program it works on, so its
+ * benchmark gets a freshly parsed program before every invocation.  Run with
+ * <code>-prof gc</code> to see the bytes allocated per compilation alongside the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScalingBenchmark {
+
+    /**
+     * A generated program, and a compiler working on the given number of threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"16", "64", "256", "1024", "4096"})
+        public int functions;
+
+        @Param({"1", "4"})
+        public int threads;
+
+        String source;
+        Compiler compiler;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            source = Programs.source("synthetic-" + functions);
+            compiler = Programs.quietCompiler();
+            compiler.setWorkerThreads(threads);
+            compiler.generateJavaScript(Programs.stream(source), discardingWriter());
+            if (compiler.getErrorCount() > 0) {
+                throw new IllegalStateException("Generated program has errors");
+            }
+        }
+    }
+
+    /**
+     * A program that has been parsed but not analyzed.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        Program program;
+
+        @Setup(Level.Invocation)
+        public void parse(Input input) throws IOException {
+            program = input.compiler.checkSyntax(Programs.stream(input.source));
+        }
+    }
+
+    @Benchmark
+    public Program parse(Input input) throws IOException {
+        return input.compiler.checkSyntax(Programs.stream(input.source));
+    }
+
+    @Benchmark
+    public Program analyze(Input input, Parsed parsed) throws IOException {
+        return input.compiler.checkSemantics(parsed.program);
+    }
+
+    @Benchmark
+    public void generateJavaScript(Input input) throws IOException {
+        input.compiler.generateJavaScript(Programs.stream(input.source), discardingWriter());
+    }
+
+    private static PrintWriter discardingWriter() {
+        return new PrintWriter(new Writer() {
+            public void write(char[] buffer, int offset, int length) {}
+            public void flush() {}
+            public void close() {}
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package edu.lmu.cs.xlg.carlos.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.lmu.cs.xlg.carlos.Compiler;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+
+/**
+ * The time to look up identifiers during semantic analysis.  The program has the given number
+ * of global variables and a stack of nested loops of the given depth whose innermost body
+ * refers to every one of those globals, so nearly all of the analysis time goes into searching
+ * the symbol tables from the innermost scope outward.  Every invocation gets a freshly parsed
+ * program, and only its analysis is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolTableBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"1000", "5000"})
+        public int globals;
+
+        @Param({"20", "200"})
+        public int depth;
+
+        String source;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < globals; i++) {
+                text.append("int g").append(i).append(" = ").append(i).append(";\n");
+            }
+            for (int i = 0; i < depth; i++) {
+                text.append("while (true) {\nint l").append(i).append(" = 0;\n");
+            }
+            for (int i = 0; i < globals; i++) {
+                text.append("l0 = g").append(i).append(" + l").append(depth - 1).append(";\n");
+            }
+            for (int i = 0; i < depth; i++) {
+                text.append("}\n");
+            }
+            source = text.toString();
+        }
+    }
+
+    /**
+     * A program that has been parsed but not analyzed, along with the compiler that parsed it.
+     */
+    @State(Scope.Thread)
+    public static class Parsed {
+        Compiler compiler;
+        Program program;
+
+        @Setup(Level.Invocation)
+        public void parse(Input input) throws IOException {
+            compiler = Programs.quietCompiler();
+            program = compiler.checkSyntax(Programs.stream(input.source));
+        }
+    }
+
+    @Benchmark
+    public Program analyze(Parsed parsed) throws IOException {
+        Program program = parsed.compiler.checkSemantics(parsed.program);
+        if (parsed.compiler.getErrorCount() > 0) {
+            throw new IllegalStateException("Generated program has errors");
+        }
+        return program;
+    }
+}
@@ -0,0 +1,263 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Compiles many Carlos files at once, concurrently, in a single JVM.
+ *
+ * Each file gets its own compiler, and so its own log and entity registry, and its diagnostics
+ * are collected in memory rather than written as they happen.  When all the files are done,
+ * the results are reported file by file in the order the files were given, followed by a
+ * throughput summary.  The summary compares the wall time of the whole batch with the sum of
+ * the times of the individual compilations, which is roughly what compiling them one after
+ * another would have taken.
+ *
+ * The command line is:
+ * <pre>
+ * java edu.lmu.cs.xlg.carlos.Compiler -batch [-cache &lt;dir&gt;] [option] &lt;file or dir&gt;...
+ * </pre>
+ * where the option is as for a single compilation.  Syntax trees and semantic graphs are
+ * written to files named after the source with the option appended, for example
+ * <code>hello.carlos.sem</code>; JavaScript goes to <code>.js</code> files as usual.  With a
+ * cache directory, all the files share one {@link BuildCache}, and the summary includes its hit
+ * and miss counts.
+ */
+public class BatchCompiler {
+
+    /**
+     * The outcome of compiling one file.
+     */
+    public static class Result {
+        private final File file;
+        private final List<String> errors;
+        private final long nanos;
+
+        Result(File file, List<String> errors, long nanos) {
+            this.file = file;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the text of each error reported for the file, in order.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns how long the compilation of this file took, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    private final String option;
+    private final int threads;
+    private BuildCache cache = null;
+
+    /**
+     * Creates a batch compiler that compiles as far as the given command line option asks,
+     * using the given number of threads.
+     */
+    public BatchCompiler(String option, int threads) {
+        this.option = option;
+        this.threads = threads;
+    }
+
+    /**
+     * Makes every compilation in the batch use the given cache, or, given null, no cache.
+     */
+    public void setCache(BuildCache cache) {
+        this.cache = cache;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int first = 1;
+        String option = "-js";
+        BuildCache cache = null;
+        if (args.length > 2 && args[1].equals("-cache")) {
+            cache = new BuildCache(new File(args[2]));
+            first = 3;
+        }
+        if (args.length > first && Compiler.isOption(args[first])) {
+            option = args[first];
+            first++;
+        }
+        Log log = new Log("Carlos", new PrintWriter(System.err, true));
+        if (first == args.length) {
+            log.message("usage");
+            return;
+        }
+
+        List<File> files = new ArrayList<File>();
+        for (String name: Arrays.asList(args).subList(first, args.length)) {
+            collect(new File(name), files, log);
+        }
+
+        BatchCompiler batch = new BatchCompiler(option, Runtime.getRuntime().availableProcessors());
+        batch.setCache(cache);
+        long start = System.nanoTime();
+        List<Result> results = batch.compile(files);
+        long wall = System.nanoTime() - start;
+
+        long total = 0;
+        int failed = 0;
+        for (Result result: results) {
+            total += result.getNanos();
+            if (result.getErrors().isEmpty()) {
+                log.message("batch_file_ok", result.getFile(), millis(result.getNanos()));
+            } else {
+                failed++;
+                log.message("batch_file_errors", result.getFile(), result.getErrors().size(),
+                    millis(result.getNanos()));
+                for (String error: result.getErrors()) {
+                    log.message("batch_error", error);
+                }
+            }
+        }
+        log.message("batch_summary", results.size(), failed, millis(wall),
+            String.format("%.1f", results.size() / (wall / 1e9)), millis(total),
+            String.format("%.2f", wall == 0 ? 0.0 : (double) total / wall));
+        if (cache != null) {
+            int hits = cache.getHits();
+            int misses = cache.getMisses();
+            int[] totals = cache.saveStatistics();
+            log.message("batch_cache", hits, misses, totals[0], totals[1]);
+        }
+    }
+
+    /**
+     * Compiles all the given files, returning their results in the same order.  Bigger files
+     * are started first so that one large file near the end of the list does not hold up the
+     * whole batch.
+     */
+    public List<Result> compile(List<File> files) throws IOException {
+        Integer[] bySize = new Integer[files.size()];
+        for (int i = 0; i < bySize.length; i++) {
+            bySize[i] = i;
+        }
+        final long[] sizes = new long[files.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = files.get(i).length();
+        }
+        Arrays.sort(bySize, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.valueOf(sizes[b]).compareTo(sizes[a]);
+            }
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>(
+                Collections.<Future<Result>>nCopies(files.size(), null));
+            for (int i: bySize) {
+                final File file = files.get(i);
+                futures.set(i, pool.submit(new Callable<Result>() {
+                    public Result call() {
+                        return compile(file);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<Result>();
+            for (Future<Result> future: futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch compilation interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compiles a single file with a compiler of its own.  Any exception is reported as an error
+     * of the file rather than thrown.
+     */
+    private Result compile(File file) {
+        Compiler compiler = new Compiler();
+        compiler.setCache(cache);
+        MemorySink sink = new MemorySink();
+        compiler.setDiagnosticSink(sink);
+        long start = System.nanoTime();
+        OutputStream dumpStream = null;
+        try {
+            if (!option.equals("-js")) {
+                dumpStream = new FileOutputStream(file.getPath() + "." + option.substring(1));
+            }
+            compiler.compileFile(option, file.getPath(), dumpStream);
+        } catch (Exception e) {
+            compiler.getLog().exception(e);
+        } finally {
+            if (dumpStream != null) {
+                try {
+                    dumpStream.close();
+                } catch (IOException e) {
+                    compiler.getLog().exception(e);
+                }
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        List<String> errors = new ArrayList<String>();
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            if (diagnostic.getSeverity() == Diagnostic.Severity.ERROR) {
+                errors.add(compiler.getLog().format(diagnostic));
+            }
+        }
+        return new Result(file, errors, nanos);
+    }
+
+    /**
+     * Adds the given file to the list, or if it is a directory, all the .carlos files within it,
+     * at any depth, in name order.  A directory that cannot be read is reported and skipped.
+     */
+    private static void collect(File file, List<File> files, Log log) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                log.error("batch_unreadable", file);
+                return;
+            }
+            Arrays.sort(children);
+            for (File child: children) {
+                if (child.isDirectory() || child.getName().endsWith(".carlos")) {
+                    collect(child, files, log);
+                }
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
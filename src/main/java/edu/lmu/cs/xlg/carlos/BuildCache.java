@@ -0,0 +1,390 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Diagnostic.Severity;
+
+/**
+ * An on-disk cache of compilation results, so that unchanged sources need not be compiled
+ * again.
+ *
+ * Entries are keyed by a SHA-256 hash of the source bytes, the compiler option, and a
+ * fingerprint of the compiler itself (the size and modification time of its jar, or of the
+ * newest class file when running from a class directory), so rebuilding the compiler
+ * invalidates everything.  An entry holds the output and the diagnostics reported while
+ * producing it, with their arguments as strings, so a hit can replay exactly what the
+ * compilation would have said.
+ *
+ * Each entry is a pair of files in the cache directory.  Reading an entry touches its
+ * modification time, and when the files in the directory grow past the size limit, the entries
+ * used least recently are deleted until they take up at most three quarters of it.  The size
+ * of the directory is found by listing it only the first time an entry is stored and when the
+ * limit is reached; in between, the cache adds up the sizes of the entries it stores itself.
+ * Temporary files count towards the size too, and are deleted when the directory is listed if
+ * they are old enough to have been left behind by a failed write.
+ *
+ * Hit and miss counts are kept both for this process and, in a small properties file in the
+ * directory, across all processes that used the cache.  The file is locked while the counts
+ * are added to it.
+ */
+public class BuildCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String FORMAT = "carlos-build-cache-1";
+    private static final String OUTPUT_SUFFIX = ".out";
+    private static final String DIAGNOSTICS_SUFFIX = ".diag";
+    private static final String STATS_FILE = "stats.properties";
+    private static final String TEMPORARY_PREFIX = "entry";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long TEMPORARY_LIFETIME_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * A cached result: the output and the diagnostics of one compilation.
+     */
+    public static class Entry {
+        private final byte[] output;
+        private final List<Diagnostic> diagnostics;
+
+        Entry(byte[] output, List<Diagnostic> diagnostics) {
+            this.output = output;
+            this.diagnostics = diagnostics;
+        }
+
+        public byte[] getOutput() {
+            return output;
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return diagnostics;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final String fingerprint;
+    private int hits = 0;
+    private int misses = 0;
+
+    // The bytes in the directory as of the last listing plus those stored since, or -1 before
+    // the first listing
+    private long size = -1;
+
+    public BuildCache(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    public BuildCache(File directory, long maxBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fingerprint = compilerFingerprint();
+    }
+
+    /**
+     * Returns the cached result of compiling the given source with the given option, or null
+     * if there isn't one.
+     */
+    public synchronized Entry lookup(byte[] source, String option) {
+        String key = key(source, option);
+        File outputFile = new File(directory, key + OUTPUT_SUFFIX);
+        File diagnosticsFile = new File(directory, key + DIAGNOSTICS_SUFFIX);
+        try {
+            Entry entry = new Entry(read(outputFile), parseDiagnostics(read(diagnosticsFile)));
+            long now = System.currentTimeMillis();
+            outputFile.setLastModified(now);
+            diagnosticsFile.setLastModified(now);
+            hits++;
+            return entry;
+        } catch (IOException e) {
+            // Missing or unreadable, so treat it as absent
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of compiling the given source with the given option, then evicts the
+     * least recently used entries if the cache has grown too big.
+     */
+    public synchronized void store(byte[] source, String option, byte[] output,
+            List<Diagnostic> diagnostics) throws IOException {
+        if (size < 0) {
+            evict();
+        }
+        String key = key(source, option);
+        File outputFile = new File(directory, key + OUTPUT_SUFFIX);
+        File diagnosticsFile = new File(directory, key + DIAGNOSTICS_SUFFIX);
+        size -= outputFile.length() + diagnosticsFile.length();
+        byte[] diagnosticsBytes = formatDiagnostics(diagnostics);
+        write(outputFile, output);
+        write(diagnosticsFile, diagnosticsBytes);
+        size += output.length + diagnosticsBytes.length;
+        if (size > maxBytes) {
+            evict();
+        }
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Adds this process's hit and miss counts to the totals kept in the cache directory and
+     * returns the new totals, hits first.  The counts of this process start again from zero.
+     * The totals file is locked while it is read and rewritten, so processes saving their
+     * counts at the same time do not lose each other's.
+     */
+    public synchronized int[] saveStatistics() throws IOException {
+        // A file lock only excludes other processes, so caches in this one take turns first
+        synchronized (BuildCache.class) {
+            RandomAccessFile file = new RandomAccessFile(new File(directory, STATS_FILE), "rw");
+            try {
+                file.getChannel().lock();
+                byte[] old = new byte[(int) file.length()];
+                file.readFully(old);
+                Properties stats = new Properties();
+                stats.load(new ByteArrayInputStream(old));
+                int totalHits = Integer.parseInt(stats.getProperty("hits", "0")) + hits;
+                int totalMisses = Integer.parseInt(stats.getProperty("misses", "0")) + misses;
+                stats.setProperty("hits", String.valueOf(totalHits));
+                stats.setProperty("misses", String.valueOf(totalMisses));
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                stats.store(bytes, null);
+                file.seek(0);
+                file.write(bytes.toByteArray());
+                file.setLength(bytes.size());
+                hits = 0;
+                misses = 0;
+                return new int[] {totalHits, totalMisses};
+            } finally {
+                // Releases the lock
+                file.close();
+            }
+        }
+    }
+
+    private String key(byte[] source, String option) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((FORMAT + "\0" + fingerprint + "\0" + option + "\0").getBytes(UTF8));
+            digest.update(source);
+            StringBuilder hex = new StringBuilder();
+            for (byte b: digest.digest()) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lists the directory to find its size, deleting temporary files left behind by failed
+     * writes, and if it is over the size limit, deletes entries, least recently used first,
+     * until they take up at most three quarters of the limit.
+     */
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            size = 0;
+            return;
+        }
+        long total = 0;
+        long staleBefore = System.currentTimeMillis() - TEMPORARY_LIFETIME_MILLIS;
+        List<File> entries = new ArrayList<File>();
+        for (File file: files) {
+            String name = file.getName();
+            if (name.endsWith(OUTPUT_SUFFIX)) {
+                entries.add(file);
+                total += file.length() + diagnosticsFileFor(file).length();
+            } else if (name.startsWith(TEMPORARY_PREFIX) && name.endsWith(TEMPORARY_SUFFIX)) {
+                if (file.lastModified() >= staleBefore || !file.delete()) {
+                    total += file.length();
+                }
+            }
+        }
+        size = total;
+        if (total <= maxBytes) {
+            return;
+        }
+        long target = maxBytes / 4 * 3;
+        File[] byAge = entries.toArray(new File[entries.size()]);
+        final long[] ages = new long[byAge.length];
+        Integer[] order = new Integer[byAge.length];
+        for (int i = 0; i < byAge.length; i++) {
+            ages[i] = byAge[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.valueOf(ages[a]).compareTo(ages[b]);
+            }
+        });
+        for (int i = 0; i < order.length && total > target; i++) {
+            File output = byAge[order[i]];
+            File diagnostics = diagnosticsFileFor(output);
+            total -= output.length() + diagnostics.length();
+            output.delete();
+            diagnostics.delete();
+        }
+        size = total;
+    }
+
+    private File diagnosticsFileFor(File outputFile) {
+        String name = outputFile.getName();
+        return new File(directory,
+            name.substring(0, name.length() - OUTPUT_SUFFIX.length()) + DIAGNOSTICS_SUFFIX);
+    }
+
+    /**
+     * Writes diagnostics one per line: the severity, the key, then the arguments, separated by
+     * tabs, with backslashes, tabs and newlines escaped.
+     */
+    private static byte[] formatDiagnostics(List<Diagnostic> diagnostics) {
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic diagnostic: diagnostics) {
+            text.append(diagnostic.getSeverity().name());
+            text.append('\t').append(escape(String.valueOf(diagnostic.getKey())));
+            for (Object argument: diagnostic.getArguments()) {
+                text.append('\t').append(escape(String.valueOf(argument)));
+            }
+            text.append('\n');
+        }
+        return text.toString().getBytes(UTF8);
+    }
+
+    private static List<Diagnostic> parseDiagnostics(byte[] bytes) {
+        List<Diagnostic> result = new ArrayList<Diagnostic>();
+        for (String line: new String(bytes, UTF8).split("\n")) {
+            if (line.length() == 0) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            Object[] arguments = new Object[fields.length - 2];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = unescape(fields[i + 2]);
+            }
+            result.add(new Diagnostic(unescape(fields[1]), arguments,
+                Severity.valueOf(fields[0])));
+        }
+        return result;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                result.append(c == 't' ? '\t' : c == 'n' ? '\n' : c);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns a string that changes whenever the compiler's code changes.
+     */
+    private static String compilerFingerprint() {
+        CodeSource source = Compiler.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return "unknown";
+        }
+        try {
+            File location = new File(source.getLocation().toURI());
+            return location.isDirectory()
+                ? "classes:" + newestModification(location)
+                : "jar:" + location.length() + ":" + location.lastModified();
+        } catch (URISyntaxException e) {
+            return "unknown";
+        }
+    }
+
+    private static long newestModification(File directory) {
+        long newest = directory.lastModified();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                newest = Math.max(newest,
+                    file.isDirectory() ? newestModification(file) : file.lastModified());
+            }
+        }
+        return newest;
+    }
+
+    static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0;) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a file by writing a temporary file and renaming it, so that other processes never
+     * see a partly written entry.  The temporary file is deleted if the write fails.
+     */
+    private void write(File file, byte[] bytes) throws IOException {
+        File temporary = File.createTempFile(TEMPORARY_PREFIX, TEMPORARY_SUFFIX, directory);
+        boolean written = false;
+        try {
+            OutputStream out = new FileOutputStream(temporary);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                temporary.delete();
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            file.delete();
+            if (!temporary.renameTo(file)) {
+                temporary.delete();
+                throw new IOException("Cannot write cache file " + file);
+            }
+        }
+    }
+}
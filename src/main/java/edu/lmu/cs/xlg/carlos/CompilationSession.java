@@ -0,0 +1,234 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+
+import edu.lmu.cs.xlg.carlos.CompilationStats.Phase;
+import edu.lmu.cs.xlg.carlos.entities.DumpWriter;
+import edu.lmu.cs.xlg.carlos.entities.Entity.AnalysisContext;
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.ParallelParser;
+import edu.lmu.cs.xlg.carlos.syntax.ParserPool;
+import edu.lmu.cs.xlg.carlos.syntax.PipelinedLexer;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+import edu.lmu.cs.xlg.translators.CarlosToJavaScriptTranslator;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * Everything that changes while a single program is compiled: the log that counts its errors,
+ * the registry of the entities created for it, and its measurements.  Sessions are made by a
+ * {@link Compiler}, and take its settings as they are when the session is made.
+ *
+ * A session compiles one program and is used by one thread at a time, but any number of
+ * sessions, of the same compiler or of different ones, may run at once on different threads.
+ * The state the sessions share, such as the built-in types and functions and the literals
+ * true, false and null, is never changed by a compilation.
+ */
+public class CompilationSession {
+
+    private final Log log;
+    private final ExecutorService workers;
+    private final boolean pipelined;
+    private final EntityRegistry registry = new EntityRegistry();
+    private final CompilationStats stats = new CompilationStats(registry);
+
+    /**
+     * Creates a session that reports to the given log, which should be used by no other
+     * session, and that parses, analyzes and translates programs on the given threads, or, if
+     * null, on the thread doing the compiling, in which case a large program is lexed on a
+     * thread of its own if pipelined is true.
+     */
+    CompilationSession(Log log, ExecutorService workers, boolean pipelined) {
+        this.log = log;
+        this.workers = workers;
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Compiles source code as far as the given command line option asks, writing the syntax
+     * tree, semantic graph, or JavaScript to the given stream in the given charset.  Nothing is
+     * written for a program that did not get through the requested phases.  Returns false,
+     * doing nothing, if the option is not one of the four known options.
+     */
+    public boolean compile(String option, SourceStream source, OutputStream out,
+            Charset charset) throws IOException {
+        if (!Compiler.isOption(option)) {
+            return false;
+        }
+        if (option.equals("-js")) {
+            generateJavaScript(source, new PrintWriter(new OutputStreamWriter(out, charset)));
+            return true;
+        }
+        DumpWriter dump = new DumpWriter(Channels.newChannel(out), charset);
+        if (option.equals("-syn")) {
+            Program program = checkSyntax(source);
+            if (program != null) {
+                dump.writeSyntaxTree(program, "", "");
+            }
+        } else if (option.equals("-sem")) {
+            Program program = checkSemantics(source);
+            if (program != null) {
+                dump.writeEntities(program);
+            }
+        } else {
+            Program program = produceOptimizedSemanticGraph(source);
+            if (program != null) {
+                dump.writeEntities(program);
+            }
+        }
+        dump.flush();
+        return true;
+    }
+
+    /**
+     * Checks the syntax of a Carlos program.  A session with worker threads parses the
+     * top-level statements of a large program concurrently on them; cutting the program into
+     * pieces replaces lexing it on a thread of its own, which a session without workers does
+     * for a large program if it was made to.
+     */
+    public Program checkSyntax(SourceStream source) throws IOException {
+        long start = System.nanoTime();
+        long allocated = CompilationStats.allocatedBytes();
+        EntityRegistry previous = registry.attach();
+        try {
+            log.message("checking_syntax");
+            if (workers != null) {
+                return ParallelParser.parse(source, log, workers);
+            } else if (pipelined) {
+                return PipelinedLexer.parse(source, log);
+            }
+            return ParserPool.parse(source, log);
+        } finally {
+            EntityRegistry.restore(previous);
+            stats.record(Phase.SYNTAX, start, allocated);
+        }
+    }
+
+    /**
+     * Checks the syntax and static semantics of a Carlos program, returning null if it has
+     * syntax errors.
+     */
+    public Program checkSemantics(SourceStream source) throws IOException {
+        Program program = checkSyntax(source);
+        if (log.getErrorCount() > 0) {
+            return null;
+        }
+        return checkSemantics(program);
+    }
+
+    /**
+     * Checks the semantics of a program object parsed in this session.
+     */
+    public Program checkSemantics(Program program) {
+        log.message("checking_semantics");
+        long start = System.nanoTime();
+        long allocated = CompilationStats.allocatedBytes();
+        EntityRegistry previous = registry.attach();
+        try {
+            program.analyze(AnalysisContext.makeGlobalContext(log).withExecutor(workers));
+        } finally {
+            EntityRegistry.restore(previous);
+            stats.record(Phase.SEMANTICS, start, allocated);
+        }
+        return program;
+    }
+
+    /**
+     * Does the whole front end for a Carlos program, returning null if it has errors.
+     */
+    public Program produceOptimizedSemanticGraph(SourceStream source) throws IOException {
+        Program program = checkSemantics(source);
+        if (log.getErrorCount() > 0) {
+            return null;
+        }
+        return optimize(program);
+    }
+
+    /**
+     * Optimizes the semantic graph of a program object checked for semantics in this session.
+     */
+    public Program optimize(Program program) {
+        log.message("optimizing");
+        long start = System.nanoTime();
+        long allocated = CompilationStats.allocatedBytes();
+        EntityRegistry previous = registry.attach();
+        try {
+            program.optimize();
+        } finally {
+            EntityRegistry.restore(previous);
+            stats.record(Phase.OPTIMIZATION, start, allocated);
+        }
+        return program;
+    }
+
+    /**
+     * Compiles a Carlos program and writes the JavaScript to a writer, which is closed
+     * afterward.  Nothing is written if the program has errors.
+     */
+    public void generateJavaScript(SourceStream source, PrintWriter writer) throws IOException {
+        try {
+            Program program = produceOptimizedSemanticGraph(source);
+            if (log.getErrorCount() > 0) {
+                return;
+            }
+            translate(program, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Compiles a Carlos program and writes the JavaScript to a file.  The file is created only
+     * once the program has compiled without errors, so a failed compilation leaves no file
+     * behind and holds none open.
+     */
+    public void generateJavaScript(SourceStream source, File file) throws IOException {
+        Program program = produceOptimizedSemanticGraph(source);
+        if (log.getErrorCount() > 0) {
+            return;
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            translate(program, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void translate(Program program, PrintWriter writer) {
+        log.message("writing");
+        long start = System.nanoTime();
+        long allocated = CompilationStats.allocatedBytes();
+        try {
+            new CarlosToJavaScriptTranslator().translateProgram(program, writer, workers);
+        } finally {
+            stats.record(Phase.TRANSLATION, start, allocated);
+        }
+    }
+
+    /**
+     * Returns the number of errors this session has logged.
+     */
+    public int getErrorCount() {
+        return log.getErrorCount();
+    }
+
+    public CompilationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the log to which this session reports.
+     */
+    public Log getLog() {
+        return log;
+    }
+}
@@ -0,0 +1,161 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import edu.lmu.cs.xlg.carlos.entities.Entity;
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
+import edu.lmu.cs.xlg.carlos.entities.Expression;
+import edu.lmu.cs.xlg.carlos.entities.Statement;
+import edu.lmu.cs.xlg.util.Allocation;
+
+/**
+ * Measurements of a single compilation: for each phase that ran, how long it took and how many
+ * bytes were allocated for it, plus the number of entities, statements and expressions
+ * created.
+ *
+ * Allocation is measured as {@link Allocation} does, so it includes the bytes allocated by the
+ * worker threads that parse, analyze and translate parts of the program, and by the thread
+ * that lexes a pipelined parse, along with those of the compiling thread.  On virtual machines
+ * that cannot measure it the allocation figures are reported as unavailable (-1).  The counts
+ * come from the
+ * compilation's entity registry, so they include entities that later phases replaced, such as
+ * expressions folded away by the optimizer.
+ */
+public class CompilationStats {
+
+    /**
+     * The phases of a compilation, in the order they run.
+     */
+    public static enum Phase {
+        SYNTAX("syntax"), SEMANTICS("semantics"), OPTIMIZATION("optimization"),
+        TRANSLATION("translation");
+
+        private final String label;
+
+        private Phase(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] allocatedBytes = new long[Phase.values().length];
+    private final EntityRegistry registry;
+
+    /**
+     * Creates an empty set of measurements for the compilation whose entities are registered
+     * in the given registry.
+     */
+    CompilationStats(EntityRegistry registry) {
+        this.registry = registry;
+        Arrays.fill(nanos, -1);
+        Arrays.fill(allocatedBytes, -1);
+    }
+
+    /**
+     * Returns whether the given phase has run.
+     */
+    public boolean ran(Phase phase) {
+        return nanos[phase.ordinal()] >= 0;
+    }
+
+    /**
+     * Returns how long the given phase took, in nanoseconds, or -1 if it did not run.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the number of bytes allocated during the given phase, on the compiling thread and
+     * on its behalf, or -1 if the phase did not run or allocation cannot be measured.
+     */
+    public long getAllocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()];
+    }
+
+    public int getEntityCount() {
+        return registry.count(Entity.class);
+    }
+
+    public int getStatementCount() {
+        return registry.count(Statement.class);
+    }
+
+    public int getExpressionCount() {
+        return registry.count(Expression.class);
+    }
+
+    /**
+     * Records a phase that started at the given <code>System.nanoTime()</code> and with the
+     * given value of {@link #allocatedBytes()}, and that has just finished.
+     */
+    void record(Phase phase, long startNanos, long startBytes) {
+        nanos[phase.ordinal()] = System.nanoTime() - startNanos;
+        long endBytes = allocatedBytes();
+        allocatedBytes[phase.ordinal()] = startBytes < 0 || endBytes < 0 ? -1
+            : endBytes - startBytes;
+    }
+
+    /**
+     * Returns the total number of bytes the current thread has allocated so far, together with
+     * those allocated on its behalf, or -1 if the virtual machine cannot tell.
+     */
+    static long allocatedBytes() {
+        return Allocation.allocatedBytes();
+    }
+
+    /**
+     * Writes the measurements as a table, one row per phase that ran, then a total, then the
+     * counts.
+     */
+    public void writeTable(PrintWriter writer) {
+        writer.printf("%-14s %12s %16s%n", "phase", "time (ms)", "allocated (KB)");
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (Phase phase: Phase.values()) {
+            if (ran(phase)) {
+                writer.printf("%-14s %12.3f %16s%n", phase, getNanos(phase) / 1e6,
+                    kilobytes(getAllocatedBytes(phase)));
+                totalNanos += getNanos(phase);
+                totalBytes = totalBytes < 0 || getAllocatedBytes(phase) < 0 ? -1
+                    : totalBytes + getAllocatedBytes(phase);
+            }
+        }
+        writer.printf("%-14s %12.3f %16s%n", "total", totalNanos / 1e6, kilobytes(totalBytes));
+        writer.printf("%d entities, %d statements, %d expressions%n",
+            getEntityCount(), getStatementCount(), getExpressionCount());
+        writer.flush();
+    }
+
+    /**
+     * Writes the measurements as a single line of JSON.  Phases that did not run are left out;
+     * unavailable allocation figures are written as -1.
+     */
+    public void writeJson(PrintWriter writer) {
+        StringBuilder json = new StringBuilder("{\"phases\":{");
+        String separator = "";
+        for (Phase phase: Phase.values()) {
+            if (ran(phase)) {
+                json.append(separator).append('"').append(phase).append("\":{\"nanos\":")
+                    .append(getNanos(phase)).append(",\"allocatedBytes\":")
+                    .append(getAllocatedBytes(phase)).append('}');
+                separator = ",";
+            }
+        }
+        json.append("},\"entities\":").append(getEntityCount())
+            .append(",\"statements\":").append(getStatementCount())
+            .append(",\"expressions\":").append(getExpressionCount()).append('}');
+        writer.println(json);
+        writer.flush();
+    }
+
+    private static String kilobytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f", bytes / 1024.0);
+    }
+}
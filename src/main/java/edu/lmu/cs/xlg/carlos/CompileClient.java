@@ -0,0 +1,149 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A tiny command line client for the compile server.  It sends a source file to a running
+ * server and writes the results just as the compiler itself would: the syntax tree or semantic
+ * graph to standard output, JavaScript to a .js file next to the source, and messages to
+ * standard error.  It authenticates with the token the server wrote to its token file, so it
+ * must run as the same user as the server.
+ * <pre>
+ * java edu.lmu.cs.xlg.carlos.CompileClient [-port n] [option] &lt;filename&gt;
+ * java edu.lmu.cs.xlg.carlos.CompileClient [-port n] -stats
+ * java edu.lmu.cs.xlg.carlos.CompileClient [-port n] -shutdown
+ * </pre>
+ */
+public class CompileClient {
+
+    private final int port;
+    private final String token;
+
+    /**
+     * The output and diagnostics of a request, as sent back by the server.
+     */
+    public static class Response {
+        private final int errors;
+        private final String output;
+        private final String diagnostics;
+
+        Response(int errors, String output, String diagnostics) {
+            this.errors = errors;
+            this.output = output;
+            this.diagnostics = diagnostics;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public String getDiagnostics() {
+            return diagnostics;
+        }
+    }
+
+    /**
+     * Creates a client for the server on the given port, reading the server's token from its
+     * token file.
+     */
+    public CompileClient(int port) throws IOException {
+        this(port, CompileServer.readToken(port));
+    }
+
+    public CompileClient(int port, String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = CompileServer.DEFAULT_PORT;
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-port")) {
+            port = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        CompileClient client = new CompileClient(port);
+        if (args.length == i + 1 && args[i].equals("-stats")) {
+            System.out.print(client.send("STATS", new byte[0]).getOutput());
+        } else if (args.length == i + 1 && args[i].equals("-shutdown")) {
+            client.send("SHUTDOWN", new byte[0]);
+        } else if (args.length == i + 1 || args.length == i + 2 && Compiler.isOption(args[i])) {
+            String option = args.length == i + 1 ? "-js" : args[i];
+            String fileName = args[args.length - 1];
+            Response response = client.compile(option, readFile(new File(fileName)));
+            System.err.print(response.getDiagnostics());
+            if (option.equals("-js")) {
+                if (response.getErrors() == 0) {
+                    Writer writer = new FileWriter(fileName + ".js");
+                    writer.write(response.getOutput());
+                    writer.close();
+                }
+            } else {
+                System.out.print(response.getOutput());
+                System.out.flush();
+            }
+        } else {
+            System.err.println("Usage: java edu.lmu.cs.xlg.carlos.CompileClient [-port n] "
+                + "([option] filename | -stats | -shutdown)");
+        }
+    }
+
+    /**
+     * Asks the server to compile the given source code as far as the given option says.
+     */
+    public Response compile(String option, byte[] source) throws IOException {
+        return send("COMPILE " + option + " " + source.length, source);
+    }
+
+    private Response send(String request, byte[] body) throws IOException {
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        try {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            out.write(("TOKEN " + token + "\n" + request + "\n").getBytes(CompileServer.UTF8));
+            out.write(body);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            String status = CompileServer.readLine(in);
+            if (status == null || !status.startsWith("OK ")) {
+                throw new IOException(status == null ? "No response from server" : status);
+            }
+            String[] words = status.split(" ");
+            byte[] output = new byte[Integer.parseInt(words[2])];
+            byte[] diagnostics = new byte[Integer.parseInt(words[3])];
+            in.readFully(output);
+            in.readFully(diagnostics);
+            return new Response(Integer.parseInt(words[1]),
+                new String(output, CompileServer.UTF8),
+                new String(diagnostics, CompileServer.UTF8));
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
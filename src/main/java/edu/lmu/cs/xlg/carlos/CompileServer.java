@@ -0,0 +1,414 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * A long-running compiler that serves compile requests over a socket on the loopback interface,
+ * so that tools can compile without starting a JVM each time.  Each connection is served on a
+ * thread of its own and can carry any number of requests, one after another.  All requests are
+ * compiled by one compiler, each in a session of its own, so requests never see each other's
+ * state.
+ *
+ * Since any local process can connect, the server only serves those that can read the token it
+ * makes up when it starts, which it writes to a file only its user can read; see
+ * {@link #tokenFile}.  It serves a limited number of connections at once, answering any more
+ * with an error, and drops connections that stay idle too long, so that clients cannot tie up
+ * its threads and memory.
+ *
+ * The protocol is simple.  A connection starts with the line <code>TOKEN &lt;token&gt;</code>,
+ * and a wrong token gets an error.  Then a request is a line of ASCII text, possibly followed by
+ * a body:
+ * <pre>
+ *   COMPILE &lt;option&gt; &lt;length&gt;    followed by length bytes of UTF-8 source code
+ *   STATS                           the number of requests served and their recent latencies
+ *   SHUTDOWN                        stops the server
+ * </pre>
+ * where the option is one of -syn, -sem, -opt or -js.  A response is the line
+ * <pre>
+ *   OK &lt;errors&gt; &lt;output length&gt; &lt;diagnostics length&gt;
+ * </pre>
+ * followed by the output (the syntax tree, semantic graph, JavaScript or statistics) and then
+ * the diagnostics, one per line, both in UTF-8.  A malformed request, including a request line
+ * longer than {@value #MAX_LINE_LENGTH} characters or a source longer than the server's maximum,
+ * gets the line <code>ERROR &lt;text&gt;</code> and the connection is closed.
+ */
+public class CompileServer {
+
+    public static final int DEFAULT_PORT = 4913;
+    public static final int DEFAULT_MAX_SOURCE_LENGTH = 1 << 24;
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+    static final int MAX_LINE_LENGTH = 1024;
+    static final int IDLE_TIMEOUT_MILLIS = 60000;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final File tokenFile;
+    private final Latencies latencies = new Latencies();
+    private final Compiler compiler = new Compiler();
+    private final Log log;
+    private volatile int maxSourceLength = DEFAULT_MAX_SOURCE_LENGTH;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    /**
+     * Creates a server listening on the given port of the loopback interface, and writes its
+     * token to the token file for that port.  Port 0 picks any free port.
+     */
+    public CompileServer(int port, Log log) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        this.log = log;
+        this.token = newToken();
+        this.tokenFile = tokenFile(getPort());
+        try {
+            writeToken(tokenFile, token);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Log log = new Log("Carlos", new PrintWriter(System.err, true));
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        CompileServer server = new CompileServer(port, log);
+        log.message("daemon_listening", String.valueOf(server.getPort()), server.tokenFile);
+        server.serve();
+        log.message("daemon_stopped", server.latencies.summary());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Makes the server refuse compile requests whose source is longer than the given number of
+     * bytes, rather than reading it all into memory.
+     */
+    public void setMaxSourceLength(int bytes) {
+        this.maxSourceLength = bytes;
+    }
+
+    /**
+     * Makes the server serve at most the given number of connections at once, answering any
+     * more with an error.  Takes effect when the server starts serving.
+     */
+    public void setMaxConnections(int connections) {
+        this.maxConnections = connections;
+    }
+
+    /**
+     * Returns the file, in the user's home directory, to which the server on the given port
+     * writes its token, and from which clients read it.
+     */
+    public static File tokenFile(int port) {
+        File directory = new File(System.getProperty("user.home"), ".carlos");
+        return new File(directory, "daemon-" + port + ".token");
+    }
+
+    /**
+     * Accepts connections until the server is shut down, then deletes the token file.
+     */
+    public void serve() throws IOException {
+        final Semaphore connections = new Semaphore(maxConnections);
+        ExecutorService pool = Executors.newFixedThreadPool(maxConnections);
+        try {
+            while (true) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    // The socket was closed by a shutdown request
+                    return;
+                }
+                if (!connections.tryAcquire()) {
+                    refuse(socket, "Too many connections");
+                    continue;
+                }
+                pool.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            handle(socket);
+                        } finally {
+                            connections.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Stops accepting connections.  Requests already being served are finished.
+     */
+    public void shutdown() throws IOException {
+        serverSocket.close();
+    }
+
+    private void refuse(Socket socket, String reason) {
+        try {
+            try {
+                socket.getOutputStream().write(("ERROR " + reason + "\n").getBytes(UTF8));
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            log.exception(e);
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            try {
+                if (!isToken(readLine(in))) {
+                    out.write("ERROR Bad token\n".getBytes(UTF8));
+                    return;
+                }
+                for (String request; (request = readLine(in)) != null;) {
+                    long start = System.nanoTime();
+                    String[] words = request.split(" ");
+                    if (words[0].equals("COMPILE") && words.length == 3
+                            && Compiler.isOption(words[1])) {
+                        byte[] source = new byte[sourceLength(words[2])];
+                        in.readFully(source);
+                        compile(words[1], source, out);
+                        latencies.add(System.nanoTime() - start);
+                    } else if (words[0].equals("STATS") && words.length == 1) {
+                        respond(out, 0, (latencies.summary() + "\n").getBytes(UTF8), new byte[0]);
+                    } else if (words[0].equals("SHUTDOWN") && words.length == 1) {
+                        respond(out, 0, new byte[0], new byte[0]);
+                        shutdown();
+                        return;
+                    } else {
+                        out.write(("ERROR Bad request: " + request + "\n").getBytes(UTF8));
+                        return;
+                    }
+                }
+            } catch (ProtocolException e) {
+                out.write(("ERROR " + e.getMessage() + "\n").getBytes(UTF8));
+            } catch (SocketTimeoutException e) {
+                // Idle for too long; just close the connection
+            } finally {
+                out.flush();
+                socket.close();
+            }
+        } catch (IOException e) {
+            log.exception(e);
+        }
+    }
+
+    /**
+     * Returns whether a connection's first line gives this server's token, comparing in the
+     * same time however much of it is right.
+     */
+    private boolean isToken(String line) {
+        return line != null && line.startsWith("TOKEN ")
+            && MessageDigest.isEqual(line.substring(6).getBytes(UTF8), token.getBytes(UTF8));
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b: bytes) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+        return token.toString();
+    }
+
+    /**
+     * Writes the token to the given file, making the file and its directory readable and
+     * writable by their owner only before anything is written.
+     */
+    private static void writeToken(File file, String token) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        restrictToOwner(directory);
+        directory.setExecutable(true, true);
+        file.delete();
+        if (!file.createNewFile()) {
+            throw new IOException("Cannot create " + file);
+        }
+        restrictToOwner(file);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8);
+        try {
+            writer.write(token);
+        } finally {
+            writer.close();
+        }
+        file.deleteOnExit();
+    }
+
+    private static void restrictToOwner(File file) throws IOException {
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+            && file.setWritable(false, false) && file.setWritable(true, true)
+            && file.setExecutable(false, false);
+        if (!restricted) {
+            throw new IOException("Cannot restrict access to " + file);
+        }
+    }
+
+    /**
+     * Reads the token of the server on the given port from its token file.
+     */
+    static String readToken(int port) throws IOException {
+        InputStream in = new FileInputStream(tokenFile(port));
+        try {
+            String token = readLine(new SequenceInputStream(in,
+                new ByteArrayInputStream(new byte[] {'\n'})));
+            if (token == null) {
+                throw new IOException("Empty token file for port " + port);
+            }
+            return token;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the source length given in a compile request, if it is one the server accepts.
+     */
+    private int sourceLength(String word) throws ProtocolException {
+        int length;
+        try {
+            length = Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Bad source length: " + word);
+        }
+        if (length < 0 || length > maxSourceLength) {
+            throw new ProtocolException("Source length " + length + " not between 0 and "
+                + maxSourceLength);
+        }
+        return length;
+    }
+
+    /**
+     * Compiles one request's source in a fresh session and writes the response.
+     */
+    private void compile(String option, byte[] source, OutputStream out) throws IOException {
+        MemorySink sink = new MemorySink();
+        CompilationSession session = compiler.newSession(sink);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            session.compile(option, SourceStream.decode(ByteBuffer.wrap(source), UTF8), output,
+                UTF8);
+        } catch (Exception e) {
+            session.getLog().exception(e);
+        }
+
+        StringBuilder diagnostics = new StringBuilder();
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            diagnostics.append(session.getLog().format(diagnostic)).append('\n');
+        }
+        respond(out, session.getErrorCount(), output.toByteArray(),
+            diagnostics.toString().getBytes(UTF8));
+    }
+
+    private static void respond(OutputStream out, int errors, byte[] output, byte[] diagnostics)
+            throws IOException {
+        out.write(("OK " + errors + " " + output.length + " " + diagnostics.length + "\n")
+            .getBytes(UTF8));
+        out.write(output);
+        out.write(diagnostics);
+        out.flush();
+    }
+
+    /**
+     * Reads a line of ASCII text terminated by a newline, returning null at end of stream.  A
+     * line longer than {@value #MAX_LINE_LENGTH} characters is refused without reading the rest.
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c; (c = in.read()) != '\n';) {
+            if (c == -1) {
+                if (line.length() == 0) {
+                    return null;
+                }
+                throw new EOFException();
+            }
+            if (line.length() == MAX_LINE_LENGTH) {
+                throw new ProtocolException("Line longer than " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /**
+     * The latencies of the most recent compile requests, kept in a ring so that a server that
+     * runs for a long time holds and sorts only a bounded number of them.
+     */
+    private static class Latencies {
+        private static final int WINDOW = 4096;
+
+        private final long[] nanos = new long[WINDOW];
+        private long count = 0;
+
+        synchronized void add(long latency) {
+            nanos[(int) (count++ % WINDOW)] = latency;
+        }
+
+        /**
+         * Returns the number of requests served, and the percentiles of the latencies of the
+         * last {@value #WINDOW} of them.
+         */
+        synchronized String summary() {
+            long[] sorted = Arrays.copyOf(nanos, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            return String.format("requests=%d p50=%s p90=%s p99=%s max=%s ms", count,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                percentile(sorted, 100));
+        }
+
+        private static String percentile(long[] sorted, int p) {
+            if (sorted.length == 0) {
+                return "-";
+            }
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return String.format("%.2f", sorted[Math.max(rank, 1) - 1] / 1e6);
+        }
+    }
+}
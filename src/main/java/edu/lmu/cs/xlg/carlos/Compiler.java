@@ -1,16 +1,27 @@
 package edu.lmu.cs.xlg.carlos;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import edu.lmu.cs.xlg.carlos.entities.Entity.AnalysisContext;
 import edu.lmu.cs.xlg.carlos.entities.Program;
-import edu.lmu.cs.xlg.carlos.syntax.Parser;
-import edu.lmu.cs.xlg.translators.CarlosToJavaScriptTranslator;
+import edu.lmu.cs.xlg.carlos.syntax.PipelinedLexer;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.DiagnosticSink;
 import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
 
 /**
  * A Carlos compiler, with a main() method to enable running as a standalone application, and
@@ -19,16 +30,52 @@ import edu.lmu.cs.xlg.util.Log;
  */
 public class Compiler {
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     /**
      *  A custom logger that writes errors and messages from a property file of base name Carlos.
+     *  Each compilation reports to a fork of it, so it holds the settings shared by all of them.
      */
     private Log log = new Log("Carlos", new PrintWriter(System.err, true));
 
+    /**
+     * The session of the compilation most recently started on each thread.  The methods that
+     * take source code start a new one; the methods that take a program and the accessors work
+     * with the current one, so that the phases of a compilation can be run one at a time, and
+     * several threads can compile with this compiler at once.  A thread's session is replaced
+     * when it starts its next compilation, so the entities of earlier compilations are not kept
+     * alive by this compiler.
+     */
+    private final ThreadLocal<CompilationSession> sessions = new ThreadLocal<CompilationSession>();
+
+    /**
+     * The threads on which the parts of programs are parsed, analyzed and translated, shared by
+     * all the compilations, or null to do everything on the compiling thread.
+     */
+    private ExecutorService workers = null;
+
+    /**
+     * Whether large programs compiled without worker threads are lexed on a thread of their own.
+     */
+    private boolean pipelined = false;
+
+    /**
+     * Where previously generated JavaScript is looked up, or null to always compile.
+     */
+    private BuildCache cache = null;
+
     /**
      * Processes command line arguments and runs the compiler based on the arguments. The command
      * line syntax for running the compiler as an application is:
      * <pre>
      * java Carlos [option] &lt;basefilename&gt;
+     * java Carlos -batch [option] &lt;file or directory&gt;...
+     * java Carlos -daemon [port]
+     * java Carlos -cache &lt;directory&gt; [option] &lt;basefilename&gt;
+     * java Carlos -stats[=json] [option] &lt;basefilename&gt;
+     * java Carlos -parallel [option] &lt;basefilename&gt;
+     * java Carlos -pipeline [option] &lt;basefilename&gt;
+     * java Carlos -batch -cache &lt;directory&gt; [option] &lt;file or directory&gt;...
      * </pre>
      * where &lt;basefilename&gt; is the name of the Carlos source file without the mandatory
      * <code>.carlos</code> extension. Option is:
@@ -38,13 +85,54 @@ public class Compiler {
      *   -opt: stop after optimizing the semantic graph, writes to stdout.
      *   -js: (the default) translate to JavaScript, writes to .js file.
      * </pre>
+     * In batch mode all the given files, and all the .carlos files under the given directories,
+     * are compiled concurrently; see {@link BatchCompiler}.  In daemon mode the compiler keeps
+     * running and serves compile requests from the local machine; see {@link CompileServer}.
+     * With a cache directory, JavaScript for sources compiled before is taken from the cache;
+     * see {@link BuildCache}.  With -stats, the time and allocation of each phase are written to
+     * standard error afterward, as a table or, with -stats=json, as JSON; see
+     * {@link CompilationStats}.  With -parallel, the top-level statements of a large program are
+     * parsed, and its function bodies analyzed and translated, on as many threads as there are
+     * processors.  With -pipeline, a large program is lexed on a thread of its own while it is
+     * parsed; -parallel takes precedence, since cutting the program into pieces does more.
      */
     public static void main(String[] args) throws IOException {
 
+        if (args.length > 0 && args[0].equals("-batch")) {
+            BatchCompiler.main(args);
+            return;
+        } else if (args.length > 0 && args[0].equals("-daemon")) {
+            CompileServer.main(args);
+            return;
+        }
+
         Compiler compiler = new Compiler();
         String option;
         String baseFileName;
 
+        String statsFormat = null;
+
+        // Leading flags, in any order.
+        int first = 0;
+        while (first < args.length) {
+            if (args[first].equals("-cache") && first + 1 < args.length) {
+                compiler.setCache(new BuildCache(new File(args[first + 1])));
+                first += 2;
+            } else if (args[first].equals("-stats") || args[first].equals("-stats=json")) {
+                statsFormat = args[first];
+                first++;
+            } else if (args[first].equals("-parallel")) {
+                compiler.setWorkerThreads(Runtime.getRuntime().availableProcessors());
+                first++;
+            } else if (args[first].equals("-pipeline")) {
+                compiler.setPipelinedLexing(true);
+                first++;
+            } else {
+                break;
+            }
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+
         // Resolve command line arguments. If the option argument is missing, use "-js" as a default.
         if (args.length == 1) {
             option = "-js";
@@ -58,98 +146,300 @@ public class Compiler {
         }
 
         // Do as much compilation as the options request.
-        Reader reader = new FileReader(baseFileName);
         try {
-            if (option.equals("-syn")) {
-                Program program = compiler.checkSyntax(reader);
-                program.printSyntaxTree("", "", new PrintWriter(System.out, true));
-            } else if (option.equals("-sem")) {
-                Program program = compiler.checkSemantics(reader);
-                program.printEntities(new PrintWriter(System.out, true));
-            } else if (option.equals("-opt")) {
-                Program program = compiler.produceOptimizedSemanticGraph(reader);
-                program.printEntities(new PrintWriter(System.out, true));
-            } else if (option.equals("-js")) {
-                compiler.generateJavaScript(reader, new PrintWriter(new FileWriter(baseFileName + ".js")));
-            } else {
+            if (!compiler.compileFile(option, baseFileName, System.out)) {
                 compiler.log.message("usage");
             }
+            if (compiler.cache != null) {
+                compiler.cache.saveStatistics();
+            }
+            if (statsFormat != null) {
+                PrintWriter writer = new PrintWriter(System.err);
+                if (statsFormat.equals("-stats=json")) {
+                    compiler.getStats().writeJson(writer);
+                } else {
+                    compiler.getStats().writeTable(writer);
+                }
+            }
         } catch (Exception e) {
-            compiler.log.exception(e);
+            compiler.getLog().exception(e);
+        }
+    }
+
+    /**
+     * Compiles a source file as far as the given command line option asks.  Syntax trees and
+     * semantic graphs are written to the given stream, which is not used with "-js"; JavaScript
+     * goes to a file named after the source file, made only if the program has no errors.
+     * Returns false, doing nothing, if the option is not one of the four known options.
+     */
+    public boolean compileFile(String option, String fileName, OutputStream dumpStream)
+            throws IOException {
+        if (!isOption(option)) {
+            return false;
+        }
+        if (option.equals("-js") && cache != null) {
+            generateJavaScriptCached(fileName);
+        } else if (option.equals("-js")) {
+            begin().generateJavaScript(SourceStream.open(new File(fileName)),
+                new File(fileName + ".js"));
+        } else {
+            compile(option, SourceStream.open(new File(fileName)), dumpStream,
+                Charset.defaultCharset());
         }
+        return true;
+    }
+
+    /**
+     * Writes the JavaScript for a source file, taking it and the messages that went with it
+     * from the cache if the same source has been compiled before, and otherwise compiling and
+     * adding the result to the cache.  Results are not cached when the log is quiet, since the
+     * messages would be missing.
+     */
+    private void generateJavaScriptCached(String fileName) throws IOException {
+        File file = new File(fileName);
+        File jsFile = new File(fileName + ".js");
+        byte[] source = BuildCache.read(file);
+        BuildCache.Entry entry = cache.lookup(source, "-js");
+        if (entry != null) {
+            Log sessionLog = begin().getLog();
+            sessionLog.message("cache_hit", file.getName());
+            for (Diagnostic diagnostic: entry.getDiagnostics()) {
+                sessionLog.replay(diagnostic);
+            }
+            if (sessionLog.getErrorCount() > 0) {
+                return;
+            }
+            OutputStream out = new FileOutputStream(jsFile);
+            try {
+                out.write(entry.getOutput());
+            } finally {
+                out.close();
+            }
+            return;
+        }
+
+        MemorySink recorder = new MemorySink(log.getSink());
+        CompilationSession session = newSession(recorder);
+        sessions.set(session);
+        session.generateJavaScript(SourceStream.decode(ByteBuffer.wrap(source), UTF8), jsFile);
+        if (!log.isQuiet()) {
+            byte[] output = session.getErrorCount() > 0 ? new byte[0] : BuildCache.read(jsFile);
+            cache.store(source, "-js", output, recorder.getDiagnostics());
+        }
+    }
+
+    /**
+     * Compiles source code from a reader as far as the given command line option asks, writing
+     * the syntax tree, semantic graph, or JavaScript to the given stream in the given charset.
+     * Nothing is written for a program that did not get through the requested phases.  Returns
+     * false, doing nothing, if the option is not one of the four known options.
+     */
+    public boolean compile(String option, Reader reader, OutputStream out, Charset charset)
+            throws IOException {
+        return compile(option, SourceStream.read(reader), out, charset);
+    }
+
+    /**
+     * Compiles source code already read into a source stream as far as the given command line
+     * option asks; see {@link #compile(String, Reader, OutputStream, Charset)}.
+     */
+    public boolean compile(String option, SourceStream source, OutputStream out,
+            Charset charset) throws IOException {
+        return isOption(option) && begin().compile(option, source, out, charset);
+    }
+
+    /**
+     * Returns whether the given string is one of the compiler's command line options.
+     */
+    public static boolean isOption(String s) {
+        return s.equals("-syn") || s.equals("-sem") || s.equals("-opt") || s.equals("-js");
+    }
+
+    /**
+     * Returns a new session with this compiler's current settings, for compiling one program
+     * independently of the compiler's other sessions.
+     */
+    public CompilationSession newSession() {
+        return newSession(null);
+    }
+
+    /**
+     * Returns a new session with this compiler's current settings that reports to the given
+     * sink, or to the compiler's sink if the given one is null.
+     */
+    public CompilationSession newSession(DiagnosticSink sink) {
+        return new CompilationSession(log.fork(sink), workers, pipelined);
+    }
+
+    /**
+     * Starts a new session and makes it the current thread's session.
+     */
+    private CompilationSession begin() {
+        CompilationSession session = newSession();
+        sessions.set(session);
+        return session;
+    }
+
+    /**
+     * Returns the current thread's session, starting one if the thread has none.
+     */
+    private CompilationSession session() {
+        CompilationSession session = sessions.get();
+        return session != null ? session : begin();
     }
 
     /**
      * Checks the syntax of a Carlos program from a reader.
      */
     public Program checkSyntax(Reader reader) throws IOException {
-        log.clearErrors();
-        Parser parser = new Parser(reader);
-        try {
-            log.message("checking_syntax");
-            return parser.parse(reader, log);
-        } finally {
-            reader.close();
-        }
+        return checkSyntax(SourceStream.read(reader));
+    }
+
+    /**
+     * Checks the syntax of a Carlos program from a source stream.
+     */
+    public Program checkSyntax(SourceStream source) throws IOException {
+        return begin().checkSyntax(source);
     }
 
     /**
      * Checks the syntax and static semantics given Carlos source code from a reader.
      */
     public Program checkSemantics(Reader reader) throws IOException {
-        Program program = checkSyntax(reader);
-        if (log.getErrorCount() > 0) {
-            return null;
-        }
-        return checkSemantics(program);
+        return checkSemantics(SourceStream.read(reader));
     }
 
     /**
-     * Checks the semantics of a program object.
+     * Checks the syntax and static semantics given Carlos source code from a source stream.
+     */
+    public Program checkSemantics(SourceStream source) throws IOException {
+        return begin().checkSemantics(source);
+    }
+
+    /**
+     * Checks the semantics of a program object parsed by this compiler on the current thread.
      */
     public Program checkSemantics(Program program) throws IOException {
-        log.message("checking_semantics");
-        program.analyze(AnalysisContext.makeGlobalContext(log));
-        return program;
+        return session().checkSemantics(program);
     }
 
     /**
      * Does the whole front end given Carlos source code from a reader.
      */
     public Program produceOptimizedSemanticGraph(Reader reader) throws IOException {
-        Program program = checkSemantics(reader);
-        if (log.getErrorCount() > 0) {
-            return null;
-        }
-        log.message("optimizing");
-        program.optimize();
-        return program;
+        return produceOptimizedSemanticGraph(SourceStream.read(reader));
+    }
+
+    /**
+     * Does the whole front end given Carlos source code from a source stream.
+     */
+    public Program produceOptimizedSemanticGraph(SourceStream source) throws IOException {
+        return begin().produceOptimizedSemanticGraph(source);
+    }
+
+    /**
+     * Optimizes the semantic graph of a program object that has been checked for semantics by
+     * this compiler on the current thread.
+     */
+    public Program optimize(Program program) {
+        return session().optimize(program);
     }
 
     /**
      * Compiles a Carlos program from a reader and writes the JavaScript to a writer.
      */
     public void generateJavaScript(Reader reader, PrintWriter writer) throws IOException {
-        Program program = produceOptimizedSemanticGraph(reader);
-        if (log.getErrorCount() > 0) {
-            return;
-        }
-        log.message("writing");
-        new CarlosToJavaScriptTranslator().translateProgram(program, writer);
-        writer.close();
+        generateJavaScript(SourceStream.read(reader), writer);
+    }
+
+    /**
+     * Compiles a Carlos program from a source stream and writes the JavaScript to a writer.
+     */
+    public void generateJavaScript(SourceStream source, PrintWriter writer) throws IOException {
+        begin().generateJavaScript(source, writer);
+    }
+
+    /**
+     * Returns the measurements of the current thread's most recent compilation, which are
+     * replaced when the thread starts its next one.
+     */
+    public CompilationStats getStats() {
+        return session().getStats();
     }
 
     /**
-     * Returns the number of errors logged so far.
+     * Returns the number of errors logged by the current thread's most recent compilation.
      */
     public int getErrorCount() {
-        return log.getErrorCount();
+        return session().getErrorCount();
     }
 
     /**
-     * Tells the compiler whether or not it should suppress log messages.
+     * Tells the compiler whether or not it should suppress log messages, in the compilations
+     * started from now on.
      */
     public void setQuiet(boolean quiet) {
         log.setQuiet(quiet);
     }
+
+    /**
+     * Returns the log to which the current thread's most recent compilation reports.
+     */
+    Log getLog() {
+        return session().getLog();
+    }
+
+    /**
+     * Makes the compilations started from now on parse the top-level statements of a large
+     * program, and analyze and translate its function bodies and other statements, concurrently
+     * on the given number of threads, or, given one or less, on the compiling thread only.  The
+     * results are the same either way.  Idle threads go away by themselves, so the compiler needs
+     * no shutting down.
+     */
+    public void setWorkerThreads(int threads) {
+        if (threads <= 1) {
+            workers = null;
+            return;
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "carlos-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        pool.allowCoreThreadTimeOut(true);
+        workers = pool;
+    }
+
+    /**
+     * Makes the compilations started from now on lex a large program on a thread of its own
+     * while parsing it, or stop doing so; see {@link PipelinedLexer}.  This applies only to
+     * compilations without worker threads, which cut a large program into pieces instead, each
+     * lexed by the parser of its piece.
+     */
+    public void setPipelinedLexing(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Makes this compiler take JavaScript for previously compiled sources from the given cache,
+     * or, given null, stop using a cache.
+     */
+    public void setCache(BuildCache cache) {
+        this.cache = cache;
+    }
+
+    public BuildCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sends the messages and errors of the compilations started from now on to the given sink
+     * instead of standard error.
+     */
+    public void setDiagnosticSink(DiagnosticSink sink) {
+        log.setSink(sink);
+    }
 }
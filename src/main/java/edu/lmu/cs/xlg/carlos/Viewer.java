@@ -14,9 +14,8 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.CharBuffer;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -29,8 +28,10 @@ import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 
 import edu.lmu.cs.xlg.carlos.entities.Entity.AnalysisContext;
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
 import edu.lmu.cs.xlg.carlos.entities.Program;
-import edu.lmu.cs.xlg.carlos.syntax.Parser;
+import edu.lmu.cs.xlg.carlos.syntax.ParserPool;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
 import edu.lmu.cs.xlg.translators.CarlosToJavaScriptTranslator;
 import edu.lmu.cs.xlg.util.Log;
 
@@ -61,6 +62,7 @@ public class Viewer extends JFrame {
     private JScrollPane viewPane = new JScrollPane();
     private StringWriter errors = new StringWriter();
     private Log log = new Log("Carlos", new PrintWriter(errors));
+    private EntityRegistry registry;
     private File currentFile;
     private JFileChooser chooser = new JFileChooser(".");
 
@@ -258,21 +260,36 @@ public class Viewer extends JFrame {
     private Program parse() {
         log.clearErrors();
         errors.getBuffer().setLength(0);
-        Reader reader = new StringReader(source.getText());
-        return new Parser(reader).parse(reader, log);
+        registry = new EntityRegistry();
+        EntityRegistry previous = registry.attach();
+        try {
+            return ParserPool.parse(new SourceStream(CharBuffer.wrap(source.getText())), log);
+        } finally {
+            EntityRegistry.restore(previous);
+        }
     }
 
     private Program analyze() {
         Program program = parse();
         if (log.getErrorCount() > 0) return null;
-        program.analyze(AnalysisContext.makeGlobalContext(log));
+        EntityRegistry previous = registry.attach();
+        try {
+            program.analyze(AnalysisContext.makeGlobalContext(log));
+        } finally {
+            EntityRegistry.restore(previous);
+        }
         return program;
     }
 
     private Program optimize() {
         Program program = analyze();
         if (log.getErrorCount() > 0) return null;
-        program.optimize();
+        EntityRegistry previous = registry.attach();
+        try {
+            program.optimize();
+        } finally {
+            EntityRegistry.restore(previous);
+        }
         return program;
     }
 
@@ -12,16 +12,16 @@ import java.util.List;
  */
 public class ArrayAggregate extends Expression {
 
-    private String typename;
+    private Symbol typename;
     private List<Expression> args;
 
     public ArrayAggregate(String typename, List<Expression> args) {
-        this.typename = typename;
+        this.typename = Symbol.forName(typename);
         this.args = args;
     }
 
     public String getTypename() {
-        return typename;
+        return typename.getName();
     }
 
     public List<Expression> getArgs() {
@@ -48,4 +48,9 @@ public class ArrayAggregate extends Expression {
             a.assertAssignableTo(elementType, "array_aggregate_type_mismatch", context);
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitArrayAggregate(this, context);
+    }
 }
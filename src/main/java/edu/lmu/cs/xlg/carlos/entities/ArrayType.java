@@ -20,4 +20,9 @@ public class ArrayType extends Type {
     public void analyze(AnalysisContext context) {
         baseType.analyze(context);
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitArrayType(this, context);
+    }
 }
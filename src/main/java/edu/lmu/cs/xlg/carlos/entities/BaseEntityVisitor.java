@@ -0,0 +1,179 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+/**
+ * An entity visitor in which every visit method, unless overridden, forwards to the visit method
+ * for the superclass of its entity: visitProgram forwards to visitBlock, visitIntegerLiteral to
+ * visitLiteral, then on to visitExpression, and so on up to visitEntity, which returns null.  A
+ * subclass overrides exactly the methods it cares about, and can catch everything else at one
+ * of the intermediate levels.
+ */
+public class BaseEntityVisitor<R, C> implements EntityVisitor<R, C> {
+
+    public R visitEntity(Entity e, C context) {
+        return null;
+    }
+
+    public R visitDeclarable(Declarable e, C context) {
+        return visitEntity(e, context);
+    }
+
+    public R visitStatement(Statement e, C context) {
+        return visitEntity(e, context);
+    }
+
+    public R visitExpression(Expression e, C context) {
+        return visitEntity(e, context);
+    }
+
+    public R visitLiteral(Literal e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitVariableExpression(VariableExpression e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitArrayAggregate(ArrayAggregate e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitArrayType(ArrayType e, C context) {
+        return visitType(e, context);
+    }
+
+    public R visitAssignmentStatement(AssignmentStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitBlock(Block b, C context) {
+        return visitEntity(b, context);
+    }
+
+    public R visitBooleanLiteral(BooleanLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitBreakStatement(BreakStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitCallExpression(CallExpression e, C context) {
+        return visitVariableExpression(e, context);
+    }
+
+    public R visitCallStatement(CallStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitCase(Case c, C context) {
+        return visitEntity(c, context);
+    }
+
+    public R visitCharLiteral(CharLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitClassicForStatement(ClassicForStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitDeclaration(Declaration e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitDottedVariable(DottedVariable e, C context) {
+        return visitVariableExpression(e, context);
+    }
+
+    public R visitEmptyArray(EmptyArray e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitFunction(Function f, C context) {
+        return visitDeclarable(f, context);
+    }
+
+    public R visitIfStatement(IfStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitIncrementStatement(IncrementStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitInfixExpression(InfixExpression e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitIntegerLiteral(IntegerLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitNullLiteral(NullLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitPostfixExpression(PostfixExpression e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitPrefixExpression(PrefixExpression e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitPrintStatement(PrintStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitProgram(Program p, C context) {
+        return visitBlock(p, context);
+    }
+
+    public R visitRealLiteral(RealLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitReturnStatement(ReturnStatement e, C context) {
+        return visitStatement(e, context);
+    }
+
+    public R visitSimpleVariableReference(SimpleVariableReference e, C context) {
+        return visitVariableExpression(e, context);
+    }
+
+    public R visitStringLiteral(StringLiteral e, C context) {
+        return visitLiteral(e, context);
+    }
+
+    public R visitStructAggregate(StructAggregate e, C context) {
+        return visitExpression(e, context);
+    }
+
+    public R visitStructField(StructField e, C context) {
+        return visitEntity(e, context);
+    }
+
+    public R visitStructType(StructType e, C context) {
+        return visitType(e, context);
+    }
+
+    public R visitSubscriptedVariable(SubscriptedVariable e, C context) {
+        return visitVariableExpression(e, context);
+    }
+
+    public R visitSymbolTable(SymbolTable e, C context) {
+        return visitEntity(e, context);
+    }
+
+    public R visitType(Type t, C context) {
+        return visitDeclarable(t, context);
+    }
+
+    public R visitVariable(Variable v, C context) {
+        return visitDeclarable(v, context);
+    }
+
+    public R visitWhileStatement(WhileStatement e, C context) {
+        return visitStatement(e, context);
+    }
+}
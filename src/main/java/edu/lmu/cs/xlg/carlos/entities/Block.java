@@ -3,9 +3,20 @@ package edu.lmu.cs.xlg.carlos.entities;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.Callable;
+
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+import edu.lmu.cs.xlg.util.Tasks;
 
 /**
  * A block, which is a container of a sequence of statements with its own symbol table.
+ *
+ * When the analysis context has an executor, the statements between two variable declarations
+ * of a block, most notably its function declarations, are analyzed concurrently.  The outcome
+ * is exactly that of analyzing them one after another: the same messages in the same order,
+ * and the same entity ids.
  */
 public class Block extends Entity {
 
@@ -121,18 +132,78 @@ public class Block extends Entity {
         // only in scope from their point of declaration onward.
         // (In other words, if we tried to first insert all the variables
         // and then analyze them later, that would have been wrong.)
+        // Nothing but a variable declaration changes what the other
+        // statements see, so the statements between two of them are
+        // analyzed together, concurrently if there is an executor.
+        AnalysisContext inner = context.withTable(table);
+        List<Statement> run = new ArrayList<Statement>();
         for (Statement s: statements) {
             if (s instanceof Declaration) {
                 Declarable d = ((Declaration)s).getDeclarable();
-                if (d instanceof Variable) {
-                    table.insert(d, context.getLog());
-                }
                 if (d instanceof Type) {
                     // Don't analyze types again
                     continue;
                 }
+                if (d instanceof Variable) {
+                    analyzeAll(run, inner);
+                    run.clear();
+                    table.insert(d, context.getLog());
+                    s.analyze(inner);
+                    continue;
+                }
+            }
+            run.add(s);
+        }
+        analyzeAll(run, inner);
+    }
+
+    /**
+     * Analyzes statements that declare no variables, in order, or if the context has an
+     * executor, concurrently.  Each concurrent statement gets a log and an entity registry of
+     * its own, and when all are done, their messages are replayed and their entities given ids
+     * in statement order.  The blocks within the statements are analyzed without the executor,
+     * since its threads are all taken.
+     */
+    private static void analyzeAll(List<Statement> run, AnalysisContext context) {
+        EntityRegistry registry = EntityRegistry.current();
+        if (context.getExecutor() == null || registry == null || run.size() < 2) {
+            for (Statement s: run) {
+                s.analyze(context);
+            }
+            return;
+        }
+
+        List<MemorySink> sinks = new ArrayList<MemorySink>();
+        List<EntityRegistry> registries = new ArrayList<EntityRegistry>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Statement s: run) {
+            MemorySink sink = new MemorySink();
+            Log log = context.getLog().fork(sink);
+            log.setQuiet(false);
+            final AnalysisContext taskContext = context.withLog(log).withExecutor(null);
+            final EntityRegistry forked = registry.fork();
+            sinks.add(sink);
+            registries.add(forked);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    EntityRegistry previous = forked.attach();
+                    try {
+                        s.analyze(taskContext);
+                    } finally {
+                        EntityRegistry.restore(previous);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        Tasks.runAll(context.getExecutor(), tasks);
+
+        for (int i = 0; i < tasks.size(); i++) {
+            registry.merge(registries.get(i));
+            for (Diagnostic diagnostic: sinks.get(i).getDiagnostics()) {
+                context.getLog().replay(diagnostic);
             }
-            s.analyze(context.withTable(table));
         }
     }
 
@@ -152,4 +223,9 @@ public class Block extends Entity {
             }
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitBlock(this, context);
+    }
 }
@@ -1,7 +1,8 @@
 package edu.lmu.cs.xlg.carlos.entities;
 
 /**
- * A simple typsafe enum of the two boolean literals, true and false.
+ * A simple typsafe enum of the two boolean literals, true and false.  They are shared by every
+ * program, so their type is fixed when they are created and analysis leaves them alone.
  */
 public class BooleanLiteral extends Literal {
 
@@ -10,15 +11,21 @@ public class BooleanLiteral extends Literal {
 
     private BooleanLiteral(String lexeme) {
         super(lexeme);
+        this.type = Type.BOOLEAN;
     }
 
     @Override
     public void analyze(AnalysisContext context) {
-        this.type = Type.BOOLEAN;
+        // Typed at creation
     }
 
     // Back door for optimizer.  Returns one of the enum values.
     static BooleanLiteral fromValue(boolean value) {
         return value ? TRUE : FALSE;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitBooleanLiteral(this, context);
+    }
 }
@@ -11,4 +11,9 @@ public class BreakStatement extends Statement {
             context.error("break_not_in_loop");
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitBreakStatement(this, context);
+    }
 }
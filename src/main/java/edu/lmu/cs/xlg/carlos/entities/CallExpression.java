@@ -8,12 +8,12 @@ import java.util.ListIterator;
  */
 public class CallExpression extends VariableExpression {
 
-    private String functionName;
+    private Symbol functionName;
     private List<Expression> args;
     private Function function;
 
     public CallExpression(String functionName, List<Expression> args) {
-        this.functionName = functionName;
+        this.functionName = Symbol.forName(functionName);
         this.args = args;
     }
 
@@ -26,7 +26,7 @@ public class CallExpression extends VariableExpression {
     }
 
     public String getFunctionName() {
-        return functionName;
+        return functionName.getName();
     }
 
     /**
@@ -55,7 +55,7 @@ public class CallExpression extends VariableExpression {
 
         // Since called from expression, must have a return type
         if (function.getReturnType() == null) {
-            context.error("void_function_in_expression", functionName);
+            context.error("void_function_in_expression", functionName.getName());
             type = Type.ARBITRARY;
         } else {
             type = function.getReturnType();
@@ -69,4 +69,9 @@ public class CallExpression extends VariableExpression {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitCallExpression(this, context);
+    }
 }
@@ -8,12 +8,12 @@ import java.util.ListIterator;
  */
 public class CallStatement extends Statement {
 
-    private String functionName;
+    private Symbol functionName;
     private List<Expression> args;
     private Function function;
 
     public CallStatement(String id, List<Expression> args) {
-        this.functionName = id;
+        this.functionName = Symbol.forName(id);
         this.args = args;
     }
 
@@ -26,7 +26,7 @@ public class CallStatement extends Statement {
     }
 
     public String getFunctionName() {
-        return functionName;
+        return functionName.getName();
     }
 
     @Override
@@ -42,7 +42,7 @@ public class CallStatement extends Statement {
 
         // Ensure it is void
         if (function != null && function.getReturnType() != null) {
-            context.error("non_void_function_in_statement", functionName);
+            context.error("non_void_function_in_statement", functionName.getName());
         }
     }
 
@@ -53,4 +53,9 @@ public class CallStatement extends Statement {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitCallStatement(this, context);
+    }
 }
@@ -32,4 +32,9 @@ public class Case extends Entity {
         condition = condition.optimize();
         body.optimize();
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitCase(this, context);
+    }
 }
@@ -58,4 +58,9 @@ public class CharLiteral extends Literal {
         }
         return result;
     }
- }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitCharLiteral(this, context);
+    }
+}
@@ -109,4 +109,9 @@ public class ClassicForStatement extends Statement {
         body.optimize();
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitClassicForStatement(this, context);
+    }
 }
@@ -5,13 +5,17 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public abstract class Declarable extends Entity {
 
-    private String name;
+    private Symbol name;
 
     public Declarable(String name) {
-        this.name = name;
+        this.name = Symbol.forName(name);
     }
 
     public String getName() {
+        return name == null ? null : name.getName();
+    }
+
+    public Symbol getSymbol() {
         return name;
     }
 
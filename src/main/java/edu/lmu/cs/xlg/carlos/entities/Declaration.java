@@ -25,4 +25,9 @@ public class Declaration extends Statement {
         declarable.optimize();
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitDeclaration(this, context);
+    }
 }
@@ -6,12 +6,13 @@ package edu.lmu.cs.xlg.carlos.entities;
 public class DottedVariable extends VariableExpression {
 
     private VariableExpression struct;
-    private String fieldName;
+    private Symbol fieldName;
     private StructField field;
+    private transient int slot = -1;
 
     public DottedVariable(VariableExpression struct, String fieldName) {
         this.struct = struct;
-        this.fieldName = fieldName;
+        this.fieldName = Symbol.forName(fieldName);
     }
 
     public StructField getField() {
@@ -19,7 +20,15 @@ public class DottedVariable extends VariableExpression {
     }
 
     public String getFieldName() {
-        return fieldName;
+        return fieldName.getName();
+    }
+
+    /**
+     * Returns the slot number of the field within its struct type, as resolved during analysis,
+     * or -1 if the field could not be resolved.
+     */
+    public int getSlot() {
+        return slot;
     }
 
     public VariableExpression getStruct() {
@@ -40,6 +49,7 @@ public class DottedVariable extends VariableExpression {
             type = Type.ARBITRARY;
         } else {
             field = ((StructType)struct.type).getField(fieldName, context);
+            slot = field.getSlot();
 
             // The type of the dotted variable is the type of the field.
             type = field.getType();
@@ -54,4 +64,9 @@ public class DottedVariable extends VariableExpression {
     public boolean isWritable() {
         return true;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitDottedVariable(this, context);
+    }
 }
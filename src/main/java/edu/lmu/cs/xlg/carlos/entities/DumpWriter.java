@@ -0,0 +1,255 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Iterator;
+import java.util.Map;
+
+import edu.lmu.cs.xlg.carlos.entities.EntityLayout.Kind;
+import edu.lmu.cs.xlg.carlos.entities.EntityLayout.Slot;
+
+/**
+ * A writer for the textual dumps of syntax trees and semantic graphs.
+ *
+ * Text is appended straight into a single reusable buffer, which is handed to the underlying
+ * writer or channel whenever it fills up, so memory use stays bounded no matter how big the
+ * program is.  Class names come from the cached entity layouts, and attribute values are
+ * appended piece by piece rather than through their string representations.  Nothing reaches
+ * the destination until the buffer fills or <code>flush()</code> is called.
+ */
+public class DumpWriter {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 1024);
+    private Writer writer;
+    private char[] chars;
+    private WritableByteChannel channel;
+    private CharsetEncoder encoder;
+    private ByteBuffer bytes;
+
+    /**
+     * Creates a dump writer that writes to a character stream.
+     */
+    public DumpWriter(Writer writer) {
+        this.writer = writer;
+        this.chars = new char[buffer.capacity()];
+    }
+
+    /**
+     * Creates a dump writer that encodes its text in the given charset and writes to a channel.
+     */
+    public DumpWriter(WritableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder();
+        this.bytes = ByteBuffer.allocate((int) (CHUNK_SIZE * encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * Writes the syntax tree rooted at the given entity, one line per node, each level indented
+     * two spaces beyond the given indent.  The root's line begins with the given prefix, and
+     * every other line with the name of the field of its parent that holds it.
+     */
+    public void writeSyntaxTree(Entity e, String indent, String prefix) throws IOException {
+        writeSyntaxTree(e, indent, 0, prefix, -1);
+    }
+
+    /**
+     * Writes a line for each entity reachable from the given entity, showing its id, its class,
+     * and all of its non-null fields.  Entities appearing as field values are shown by id only.
+     */
+    public void writeEntities(Entity root) throws IOException {
+        final IOException[] failure = {null};
+        new Traversal(new Entity.Visitor() {
+            public void onEntry(Entity e) {
+                if (failure[0] == null) {
+                    try {
+                        writeDetailLine(e);
+                    } catch (IOException x) {
+                        failure[0] = x;
+                    }
+                }
+            }
+            public void onExit(Entity e) {
+                // Intentionally empty
+            }
+        }).run(root);
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Writes everything buffered so far to the destination.
+     */
+    public void flush() throws IOException {
+        drain(true);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void writeSyntaxTree(Entity e, String indent, int depth, String prefix, int index)
+            throws IOException {
+        buffer.append(indent);
+        for (int i = 0; i < depth; i++) {
+            buffer.append("  ");
+        }
+        buffer.append(prefix);
+        if (index >= 0) {
+            buffer.append('[').append(index).append(']');
+        }
+        if (depth > 0) {
+            buffer.append(": ");
+        }
+
+        EntityLayout layout = e.layout();
+        buffer.append('(').append(layout.getKindName()).append(')');
+        for (Slot slot: layout.getAttributeSlots()) {
+            Object value = slot.get(e);
+            if (value != null) {
+                buffer.append(' ').append(slot.getName()).append('=');
+                appendValue(value);
+            }
+        }
+        endLine();
+
+        for (Slot slot: layout.getChildSlots()) {
+            Object value = slot.get(e);
+            if (value == null) {
+                continue;
+            } else if (slot.getKind() == Kind.ENTITY) {
+                writeSyntaxTree((Entity) value, indent, depth + 1, slot.getName(), -1);
+            } else {
+                int i = 0;
+                for (Object child: (Iterable<?>) value) {
+                    writeSyntaxTree((Entity) child, indent, depth + 1, slot.getName(), i++);
+                }
+            }
+        }
+    }
+
+    private void writeDetailLine(Entity e) throws IOException {
+        EntityLayout layout = e.layout();
+        buffer.append('#').append(e.getId()).append("\t(").append(layout.getKindName()).append(')');
+        for (Slot slot: layout.getSlots()) {
+            Object value = slot.get(e);
+            if (value != null) {
+                buffer.append(' ').append(slot.getName()).append('=');
+                if (slot.isArray()) {
+                    appendElements((Object[]) value);
+                } else {
+                    appendValue(value);
+                }
+            }
+        }
+        endLine();
+    }
+
+    /**
+     * Appends a value exactly as its toString() would show it, without building that string.
+     */
+    private void appendValue(Object value) {
+        if (value instanceof Entity) {
+            buffer.append('#').append(((Entity) value).getId());
+        } else if (value instanceof String) {
+            buffer.append((String) value);
+        } else if (value instanceof Integer) {
+            buffer.append(((Integer) value).intValue());
+        } else if (value instanceof Iterable<?>) {
+            buffer.append('[');
+            for (Iterator<?> it = ((Iterable<?>) value).iterator(); it.hasNext();) {
+                appendValue(it.next());
+                if (it.hasNext()) {
+                    buffer.append(", ");
+                }
+            }
+            buffer.append(']');
+        } else if (value instanceof Map<?, ?>) {
+            buffer.append('{');
+            for (Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+                    it.hasNext();) {
+                Map.Entry<?, ?> entry = it.next();
+                appendValue(entry.getKey());
+                buffer.append('=');
+                appendValue(entry.getValue());
+                if (it.hasNext()) {
+                    buffer.append(", ");
+                }
+            }
+            buffer.append('}');
+        } else {
+            buffer.append(value);
+        }
+    }
+
+    private void appendElements(Object[] values) {
+        buffer.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            appendValue(values[i]);
+        }
+        buffer.append(']');
+    }
+
+    private void endLine() throws IOException {
+        buffer.append(NEWLINE);
+        if (buffer.length() >= CHUNK_SIZE) {
+            drain(false);
+        }
+    }
+
+    /**
+     * Hands the buffered text to the destination.  When writing to a channel, a trailing high
+     * surrogate is held back until its partner arrives, unless this is the final drain.
+     */
+    private void drain(boolean endOfInput) throws IOException {
+        if (writer != null) {
+            int length = buffer.length();
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            buffer.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+            buffer.setLength(0);
+            return;
+        }
+
+        CharBuffer in = CharBuffer.wrap(buffer);
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            writeBytes();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            writeBytes();
+            encoder.reset();
+        }
+        buffer.delete(0, buffer.length() - in.remaining());
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
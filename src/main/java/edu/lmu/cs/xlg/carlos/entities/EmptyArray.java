@@ -9,11 +9,11 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class EmptyArray extends Expression {
 
-    private String tyname;
+    private Symbol tyname;
     private Expression bound;
 
     public EmptyArray(String tyname, Expression bound) {
-        this.tyname = tyname;
+        this.tyname = Symbol.forName(tyname);
         this.bound = bound;
     }
 
@@ -22,7 +22,7 @@ public class EmptyArray extends Expression {
     }
 
     public String getTyname() {
-        return tyname;
+        return tyname.getName();
     }
 
     public void analyze(AnalysisContext context) {
@@ -31,4 +31,9 @@ public class EmptyArray extends Expression {
         bound.assertInteger("new_array_allocation", context);
         type = type.array();
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitEmptyArray(this, context);
+    }
 }
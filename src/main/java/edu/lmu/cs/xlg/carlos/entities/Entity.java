@@ -1,14 +1,9 @@
 package edu.lmu.cs.xlg.carlos.entities;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import edu.lmu.cs.xlg.util.Log;
 
@@ -67,26 +62,29 @@ import edu.lmu.cs.xlg.util.Log;
 public abstract class Entity {
 
     /**
-     * Collection of all entities that have ever been created, as a map with the entities as keys
-     * and their ids as values.
+     * The id of this entity, unique within the compilation that created it.  Entities created
+     * by a task analyzing part of a program concurrently with others get their ids when the
+     * task's registry is merged; see {@link EntityRegistry#fork()}.
      */
-    private static Map<Entity, Integer> all = new LinkedHashMap<Entity, Integer>();
+    private int id;
 
     /**
-     * Creates an entity, "assigning" it a new unique id by placing it in a global map mapping the
-     * entity to its id.
+     * Creates an entity, assigning it a new id from the entity registry of the compilation
+     * currently running on this thread.
      */
     public Entity() {
-        synchronized (all) {
-            all.put(this, all.size());
-        }
+        id = EntityRegistry.register(this);
     }
 
     /**
      * Returns the integer id of this entity.
      */
-    public Integer getId() {
-        return all.get(this);
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
     }
 
     /**
@@ -94,7 +92,14 @@ public abstract class Entity {
      */
     @Override
     public String toString() {
-        return "#" + getId();
+        return "#" + id;
+    }
+
+    /**
+     * Returns the cached field layout of this entity's class.
+     */
+    public final EntityLayout layout() {
+        return EntityLayout.of(getClass());
     }
 
     /**
@@ -102,72 +107,20 @@ public abstract class Entity {
      * writer.  Each level is indented two spaces.
      */
     public final void printSyntaxTree(String indent, String prefix, PrintWriter out) {
-
-        // Prepare the line to be written
-        String classname = getClass().getName();
-        String kind = classname.substring(classname.lastIndexOf('.') + 1);
-        String line = indent + prefix + "(" + kind + ")";
-
-        // Process the fields, adding plain attributes to the line, but storing all the entity
-        // children in a linked hash map to be processed after the line is written.  We use a
-        // linked hash map because the order of output is important.
-        Map<String, Entity> children = new LinkedHashMap<String, Entity>();
-        for (Map.Entry<String, Object> entry: attributes().entrySet()) {
-            String name = entry.getKey();
-            Object value = entry.getValue();
-            if (value == null) {
-                continue;
-            } else if (value instanceof Entity) {
-                children.put(name, Entity.class.cast(value));
-            } else if (value instanceof Iterable<?>) {
-                try {
-                    int index = 0;
-                    for (Object child : (Iterable<?>) value) {
-                        children.put(name + "[" + (index++) + "]", (Entity) child);
-                    }
-                } catch (ClassCastException cce) {
-                    // Special case for non-entity collections
-                    line += " " + name + "=" + value;
-                }
-            } else {
-                // Simple attribute, attach description to node name
-                line += " " + name + "=" + value;
-            }
-        }
-        out.println(line);
-
-        // Now we can go through all the entity children that were saved up earlier
-        for (Map.Entry<String, Entity> child: children.entrySet()) {
-            child.getValue().printSyntaxTree(indent + "  ", child.getKey() + ": ", out);
+        try {
+            DumpWriter dump = new DumpWriter(out);
+            dump.writeSyntaxTree(this, indent, prefix);
+            dump.flush();
+        } catch (IOException cannotHappen) {
+            // Print writers never throw
         }
     }
 
     /**
      * Traverses the semantic graph starting at this entity, applying visitor v to each entity.
      */
-    public void traverse(Visitor v, Set<Entity> visited) {
-
-        // The graph may have cycles, so skip this entity if we have seen it before.  If we
-        // haven't, mark it seen.
-        if (visited.contains(this)) {
-            return;
-        }
-        visited.add(this);
-
-        v.onEntry(this);
-        for (Map.Entry<String, Object> entry: attributes().entrySet()) {
-            Object value = entry.getValue();
-            if (value instanceof Entity) {
-                Entity.class.cast(value).traverse(v, visited);
-            } else if (value instanceof Iterable<?>) {
-                for (Object child : (Iterable<?>) value) {
-                    if (child instanceof Entity) {
-                        Entity.class.cast(child).traverse(v, visited);
-                    }
-                }
-            }
-        }
-        v.onExit(this);
+    public void traverse(Visitor v) {
+        new Traversal(v).run(this);
     }
 
     public static interface Visitor {
@@ -176,71 +129,31 @@ public abstract class Entity {
     }
 
     /**
-     * Writes a concise line with the entity's id number, class, and non-null properties.  For any
-     * property that is itself an entity, or a collection of entities, only the entity id is
-     * written.
+     * Writes a concise line for each entity in the semantic graph rooted at this entity, with the
+     * entity's id number, class, and non-null properties.  For any property that is itself an
+     * entity, or a collection of entities, only the entity id is written.
      */
-    private void writeDetailLine(PrintWriter writer) {
-        String classname = getClass().getName();
-        String kind = classname.substring(classname.lastIndexOf('.') + 1);
-        writer.print(this + "\t(" + kind + ")");
-
-        for (Map.Entry<String, Object> entry: attributes().entrySet()) {
-            String name = entry.getKey();
-            Object value = entry.getValue();
-            if (value == null) {
-                continue;
-            }
-            if (value.getClass().isArray()) {
-                value = Arrays.asList((Object[]) value);
-            }
-            writer.print(" " + name + "=" + value);
+    public final void printEntities(PrintWriter writer) {
+        try {
+            DumpWriter dump = new DumpWriter(writer);
+            dump.writeEntities(this);
+            dump.flush();
+        } catch (IOException cannotHappen) {
+            // Print writers never throw
         }
-        writer.println();
-    }
-
-    public final void printEntities(final PrintWriter writer) {
-        traverse(new Visitor() {
-            public void onEntry(Entity e) {
-                e.writeDetailLine(writer);
-            }
-            public void onExit(Entity e) {
-                // Intentionally empty
-            }
-        }, new HashSet<Entity>());
-    }
-
-    /**
-     * Returns a map of name-value pairs for the given entity's fields and their values.  The
-     * set of fields computed here are the non-static declared fields of its class, together with
-     * the relevant fields of its ancestor classes, up to but not including the class Entity
-     * itself.
-     */
-    private Map<String, Object> attributes() {
-        Map<String, Object> result = new LinkedHashMap<String, Object>();
-        for (Class<?> c = getClass(); c != Entity.class; c = c.getSuperclass()) {
-            for (Field field: c.getDeclaredFields()) {
-                if ((field.getModifiers() & Modifier.STATIC) == 0) {
-                    try {
-                        field.setAccessible(true);
-                        result.put(field.getName(), field.get(this));
-                    } catch (IllegalAccessException cannotHappen) {
-                    }
-                }
-            }
-        }
-        return result;
     }
 
     /**
      * Context for semantic analysis.
      *
-     * Context objects bundle four properties:
+     * Context objects bundle five properties:
      * <ul>
      *   <li>A logger to count errors and log messages.
      *   <li>The symbol table in which all identifiers should be looked up.
      *   <li>The innermost enclosing function of the entity being analyzed.
      *   <li>Whether we are in a loop, necessary for checking break statements, for example.
+     *   <li>The threads on which the statements of a block may be analyzed concurrently, or
+     *       null to analyze them one after another.
      * </ul>
      */
     public static class AnalysisContext {
@@ -248,16 +161,19 @@ public abstract class Entity {
         private SymbolTable table;
         private Function function;
         private boolean inLoop;
+        private ExecutorService executor;
 
-        private AnalysisContext(Log log, SymbolTable table, Function function, boolean inLoop) {
+        private AnalysisContext(Log log, SymbolTable table, Function function, boolean inLoop,
+                ExecutorService executor) {
             this.log = log;
             this.table = table;
             this.function = function;
             this.inLoop = inLoop;
+            this.executor = executor;
         }
 
         public static AnalysisContext makeGlobalContext(Log log) {
-            AnalysisContext context = new AnalysisContext(log, null, null, false);
+            AnalysisContext context = new AnalysisContext(log, null, null, false, null);
             SymbolTable global = new SymbolTable(null);
             global.insert(Type.INT, context.getLog());
             global.insert(Type.REAL, context.getLog());
@@ -276,15 +192,23 @@ public abstract class Entity {
         }
 
         public AnalysisContext withTable(SymbolTable table) {
-            return new AnalysisContext(this.log, table, this.function, this.inLoop);
+            return new AnalysisContext(this.log, table, this.function, this.inLoop, this.executor);
         }
 
         public AnalysisContext withFunction(Function function) {
-            return new AnalysisContext(this.log, this.table, function, this.inLoop);
+            return new AnalysisContext(this.log, this.table, function, this.inLoop, this.executor);
         }
 
         public AnalysisContext withInLoop(boolean inLoop) {
-            return new AnalysisContext(this.log, this.table, this.function, inLoop);
+            return new AnalysisContext(this.log, this.table, this.function, inLoop, this.executor);
+        }
+
+        public AnalysisContext withLog(Log log) {
+            return new AnalysisContext(log, this.table, this.function, this.inLoop, this.executor);
+        }
+
+        public AnalysisContext withExecutor(ExecutorService executor) {
+            return new AnalysisContext(this.log, this.table, this.function, this.inLoop, executor);
         }
 
         public Log getLog() {
@@ -303,15 +227,19 @@ public abstract class Entity {
             return inLoop;
         }
 
-        public Type lookupType(String name) {
+        public ExecutorService getExecutor() {
+            return executor;
+        }
+
+        public Type lookupType(Symbol name) {
             return getTable().lookupType(name, getLog());
         }
 
-        public Variable lookupVariable(String name) {
+        public Variable lookupVariable(Symbol name) {
             return getTable().lookupVariable(name, getLog());
         }
 
-        public Function lookupFunction(String name, List<Expression> args) {
+        public Function lookupFunction(Symbol name, List<Expression> args) {
             return getTable().lookupFunction(name, args, getLog());
         }
 
@@ -324,4 +252,9 @@ public abstract class Entity {
      * Performs semantic analysis on this entity, and (necessarily) on its descendants.
      */
     public abstract void analyze(AnalysisContext context);
+
+    /**
+     * Calls the visit method of the given visitor for this entity's class, returning its result.
+     */
+    public abstract <R, C> R accept(EntityVisitor<R, C> visitor, C context);
 }
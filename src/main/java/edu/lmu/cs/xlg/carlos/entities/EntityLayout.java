@@ -0,0 +1,169 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The fields of an entity class, worked out once per class and cached.
+ *
+ * The layout of a class consists of the non-static declared fields of the class together with
+ * those of its ancestors, up to but not including Entity itself, in the order subclass fields
+ * first.  Transient fields are left out; they hold indexes and caches derived from the other
+ * fields, and are neither dumped nor walked.  Each field becomes a slot, classified by its
+ * declared type as either a child entity, a list of child entities, or a plain attribute.  The
+ * dumpers and traversals go through these slots instead of reflecting over the class on every
+ * node.
+ */
+public final class EntityLayout {
+
+    /**
+     * What a slot holds.
+     */
+    public static enum Kind {ENTITY, ENTITY_LIST, ATTRIBUTE}
+
+    /**
+     * A single field of an entity class.
+     */
+    public static final class Slot {
+        private final Field field;
+        private final Kind kind;
+        private final boolean array;
+
+        private Slot(Field field, Kind kind) {
+            this.field = field;
+            this.kind = kind;
+            Class<?> type = field.getType();
+            this.array = type.isArray() && !type.getComponentType().isPrimitive();
+        }
+
+        public String getName() {
+            return field.getName();
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns whether the slot holds an array of objects.
+         */
+        public boolean isArray() {
+            return array;
+        }
+
+        /**
+         * Returns the value of this slot in the given entity.
+         */
+        public Object get(Entity e) {
+            try {
+                return field.get(e);
+            } catch (IllegalAccessException cannotHappen) {
+                throw new IllegalStateException(cannotHappen);
+            }
+        }
+    }
+
+    private static final ConcurrentMap<Class<?>, EntityLayout> cache =
+        new ConcurrentHashMap<Class<?>, EntityLayout>();
+
+    private final String kindName;
+    private final Slot[] slots;
+    private final Slot[] childSlots;
+    private final Slot[] attributeSlots;
+
+    private EntityLayout(Class<? extends Entity> c) {
+        String classname = c.getName();
+        this.kindName = classname.substring(classname.lastIndexOf('.') + 1);
+        List<Slot> all = new ArrayList<Slot>();
+        List<Slot> children = new ArrayList<Slot>();
+        List<Slot> attributes = new ArrayList<Slot>();
+        for (Class<?> k = c; k != Entity.class; k = k.getSuperclass()) {
+            for (Field field: k.getDeclaredFields()) {
+                if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0
+                        && !field.isSynthetic()) {
+                    field.setAccessible(true);
+                    Slot slot = new Slot(field, kindOf(field));
+                    all.add(slot);
+                    (slot.kind == Kind.ATTRIBUTE ? attributes : children).add(slot);
+                }
+            }
+        }
+        this.slots = all.toArray(new Slot[all.size()]);
+        this.childSlots = children.toArray(new Slot[children.size()]);
+        this.attributeSlots = attributes.toArray(new Slot[attributes.size()]);
+    }
+
+    /**
+     * Returns the layout for the given class, computing it on first use.
+     */
+    public static EntityLayout of(Class<? extends Entity> c) {
+        EntityLayout layout = cache.get(c);
+        if (layout == null) {
+            layout = new EntityLayout(c);
+            EntityLayout existing = cache.putIfAbsent(c, layout);
+            if (existing != null) {
+                layout = existing;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the name of the class without its package, as shown in dumps.
+     */
+    public String getKindName() {
+        return kindName;
+    }
+
+    /**
+     * Returns all the slots, in field order.
+     */
+    public Slot[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * Returns the slots holding child entities or lists of child entities, in field order.
+     */
+    public Slot[] getChildSlots() {
+        return childSlots;
+    }
+
+    /**
+     * Returns the slots holding plain attributes, in field order.
+     */
+    public Slot[] getAttributeSlots() {
+        return attributeSlots;
+    }
+
+    /**
+     * Classifies a field by its declared type.  A field is a list of entities when its type is
+     * an Iterable whose type argument is an entity class (or a wildcard bounded by one).
+     */
+    private static Kind kindOf(Field field) {
+        Class<?> type = field.getType();
+        if (Entity.class.isAssignableFrom(type)) {
+            return Kind.ENTITY;
+        }
+        if (Iterable.class.isAssignableFrom(type)
+                && field.getGenericType() instanceof ParameterizedType) {
+            java.lang.reflect.Type[] arguments =
+                ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+            java.lang.reflect.Type argument = arguments.length == 1 ? arguments[0] : null;
+            if (argument instanceof WildcardType) {
+                argument = ((WildcardType) argument).getUpperBounds()[0];
+            }
+            if (argument instanceof Class<?>
+                    && Entity.class.isAssignableFrom((Class<?>) argument)) {
+                return Kind.ENTITY_LIST;
+            }
+        }
+        return Kind.ATTRIBUTE;
+    }
+}
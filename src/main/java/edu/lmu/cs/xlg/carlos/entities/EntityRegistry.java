@@ -0,0 +1,228 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The entities created during a single compilation, together with the allocator for their ids.
+ *
+ * A registry is attached to the thread doing the compiling while a phase runs, and every entity
+ * constructed during that time is stamped with the next id from the registry and remembered
+ * here.  When the compilation is over and the registry is no longer referenced, the whole
+ * semantic graph can be garbage collected.  Entities constructed when no registry is attached
+ * (the built-in types and functions, for instance) get ids from a shared counter and are not
+ * remembered anywhere.
+ *
+ * The ids of a registry start just after the ids of the built-in entities, so the ids within a
+ * single compilation are unique and nearly dense.
+ *
+ * Parts of a compilation can run concurrently, each task with a registry forked from the
+ * compilation's.  Entities created by a task get no id until its registry is merged back, and
+ * forked registries are merged in the order their tasks would have run one after another, so
+ * the ids come out exactly as if they had.  Array types are shared by all the tasks; a task
+ * that uses one that has no id yet records it too, so that it gets its id where the first task
+ * to use it would have created it.
+ */
+public class EntityRegistry {
+
+    private static final AtomicInteger sharedIds = new AtomicInteger(0);
+    private static final ThreadLocal<EntityRegistry> current = new ThreadLocal<EntityRegistry>();
+
+    /**
+     * The id of an entity whose id has not been assigned yet.
+     */
+    static final int PENDING = -1;
+
+    private final int base;
+    private final EntityRegistry parent;
+    private final List<Entity> entities = new ArrayList<Entity>();
+    private final Map<Type, ArrayType> arrayTypes = new HashMap<Type, ArrayType>();
+
+    /**
+     * Creates a registry for a new compilation.
+     */
+    public EntityRegistry() {
+        initializeBuiltIns();
+        this.base = sharedIds.get();
+        this.parent = null;
+    }
+
+    private EntityRegistry(EntityRegistry parent) {
+        this.base = parent.base;
+        this.parent = parent;
+    }
+
+    /**
+     * Returns a registry for a task that creates entities of this registry's compilation
+     * concurrently with other tasks.  The entities it registers have no ids until it is merged
+     * back into this registry.
+     */
+    public EntityRegistry fork() {
+        return new EntityRegistry(this);
+    }
+
+    /**
+     * Gives ids to the entities of a registry forked from this one, in the order they were
+     * created, and takes them into this registry.  Forked registries must be merged in the order
+     * of their tasks, after all of the tasks are finished.
+     */
+    public void merge(EntityRegistry child) {
+        synchronized (entities) {
+            for (Entity e: child.entities) {
+                if (parent != null) {
+                    entities.add(e);
+                } else if (e.getId() == PENDING) {
+                    e.setId(base + entities.size());
+                    entities.add(e);
+                }
+            }
+        }
+        child.entities.clear();
+    }
+
+    /**
+     * Makes this registry the one in which entities created by the current thread are
+     * registered, returning the registry that was attached before, so that the caller can
+     * restore it when done.
+     */
+    public EntityRegistry attach() {
+        EntityRegistry previous = current.get();
+        current.set(this);
+        return previous;
+    }
+
+    /**
+     * Re-attaches a registry previously returned from <code>attach()</code>.
+     */
+    public static void restore(EntityRegistry previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Returns the smallest id this registry hands out.
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Returns one more than the largest id handed out so far by this registry.
+     */
+    public int getLimit() {
+        synchronized (entities) {
+            return base + entities.size();
+        }
+    }
+
+    /**
+     * Returns the entity in this registry with the given id, or null if there is no such entity.
+     */
+    public Entity get(int id) {
+        synchronized (entities) {
+            int index = id - base;
+            return index < 0 || index >= entities.size() ? null : entities.get(index);
+        }
+    }
+
+    /**
+     * Returns the number of entities in this registry that are instances of the given class.
+     */
+    public int count(Class<? extends Entity> c) {
+        synchronized (entities) {
+            int result = 0;
+            for (Entity e: entities) {
+                if (c.isInstance(e)) {
+                    result++;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns whether the given entity was created in this registry, or for a forked registry,
+     * in any registry of its compilation.
+     */
+    public boolean owns(Entity e) {
+        if (parent != null) {
+            return e.getId() == PENDING || parent.owns(e);
+        }
+        return get(e.getId()) == e;
+    }
+
+    /**
+     * Returns the registry attached to the current thread, or null if there isn't one.
+     */
+    public static EntityRegistry current() {
+        return current.get();
+    }
+
+    /**
+     * Returns the array type, belonging to this registry, whose base type is a type from outside
+     * this registry, creating it the first time it is asked for.
+     */
+    ArrayType arrayOf(Type baseType) {
+        if (parent != null) {
+            ArrayType result = parent.arrayOf(baseType);
+            share(result);
+            return result;
+        }
+        synchronized (arrayTypes) {
+            ArrayType result = arrayTypes.get(baseType);
+            if (result == null) {
+                result = new ArrayType(baseType);
+                arrayTypes.put(baseType, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Notes that the task of this forked registry uses an array type shared by all the tasks,
+     * so that if it has no id yet, it gets one when this registry is merged.
+     */
+    void share(ArrayType type) {
+        if (parent != null && type.getId() == PENDING) {
+            synchronized (entities) {
+                entities.add(type);
+            }
+        }
+    }
+
+    /**
+     * Allocates an id for a newly constructed entity: from the registry attached to the current
+     * thread if there is one, otherwise from the shared counter.
+     */
+    static int register(Entity e) {
+        EntityRegistry registry = current.get();
+        if (registry == null) {
+            return sharedIds.getAndIncrement();
+        }
+        synchronized (registry.entities) {
+            registry.entities.add(e);
+            return registry.parent != null ? PENDING
+                : registry.base + registry.entities.size() - 1;
+        }
+    }
+
+    /**
+     * Forces the creation of the built-in entities, so that they get their shared ids before the
+     * base of any registry is computed.
+     */
+    private static void initializeBuiltIns() {
+        // Touching a static field of each class runs its static initializer.
+        Type.INT.getId();
+        Function.LN.getId();
+        Variable.ARBITRARY.getId();
+        StructField.ARBITRARY.getId();
+        BooleanLiteral.TRUE.getId();
+        Literal.NULL.getId();
+    }
+}
@@ -0,0 +1,49 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+/**
+ * A visitor over the concrete entity classes, dispatched through <code>Entity.accept</code>.
+ * Each visit method receives the entity and a context object of the visitor's choosing, and
+ * returns a result.  Visitors that do not produce results or need no context can use Void for
+ * either type parameter and pass null.
+ *
+ * Most visitors care about only some of the entity classes; they should extend
+ * BaseEntityVisitor rather than implement this interface directly.
+ */
+public interface EntityVisitor<R, C> {
+    R visitArrayAggregate(ArrayAggregate e, C context);
+    R visitArrayType(ArrayType e, C context);
+    R visitAssignmentStatement(AssignmentStatement e, C context);
+    R visitBlock(Block b, C context);
+    R visitBooleanLiteral(BooleanLiteral e, C context);
+    R visitBreakStatement(BreakStatement e, C context);
+    R visitCallExpression(CallExpression e, C context);
+    R visitCallStatement(CallStatement e, C context);
+    R visitCase(Case c, C context);
+    R visitCharLiteral(CharLiteral e, C context);
+    R visitClassicForStatement(ClassicForStatement e, C context);
+    R visitDeclaration(Declaration e, C context);
+    R visitDottedVariable(DottedVariable e, C context);
+    R visitEmptyArray(EmptyArray e, C context);
+    R visitFunction(Function f, C context);
+    R visitIfStatement(IfStatement e, C context);
+    R visitIncrementStatement(IncrementStatement e, C context);
+    R visitInfixExpression(InfixExpression e, C context);
+    R visitIntegerLiteral(IntegerLiteral e, C context);
+    R visitNullLiteral(NullLiteral e, C context);
+    R visitPostfixExpression(PostfixExpression e, C context);
+    R visitPrefixExpression(PrefixExpression e, C context);
+    R visitPrintStatement(PrintStatement e, C context);
+    R visitProgram(Program p, C context);
+    R visitRealLiteral(RealLiteral e, C context);
+    R visitReturnStatement(ReturnStatement e, C context);
+    R visitSimpleVariableReference(SimpleVariableReference e, C context);
+    R visitStringLiteral(StringLiteral e, C context);
+    R visitStructAggregate(StructAggregate e, C context);
+    R visitStructField(StructField e, C context);
+    R visitStructType(StructType e, C context);
+    R visitSubscriptedVariable(SubscriptedVariable e, C context);
+    R visitSymbolTable(SymbolTable e, C context);
+    R visitType(Type t, C context);
+    R visitVariable(Variable v, C context);
+    R visitWhileStatement(WhileStatement e, C context);
+}
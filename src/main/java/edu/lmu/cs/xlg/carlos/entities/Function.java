@@ -13,7 +13,9 @@ import java.util.List;
  */
 public class Function extends Declarable {
 
-    private String returnTypeName;
+    private static final Symbol VOID = Symbol.forName("void");
+
+    private Symbol returnTypeName;
     private List<Variable> parameters;
     private Block body;
     private Type returnType;
@@ -30,7 +32,7 @@ public class Function extends Declarable {
 
     public Function(String returnTypeName, String name, List<Variable> parameters, Block body) {
         super(name);
-        this.returnTypeName = returnTypeName;
+        this.returnTypeName = Symbol.forName(returnTypeName);
         this.parameters = parameters;
         this.body = body;
     }
@@ -45,7 +47,7 @@ public class Function extends Declarable {
      */
     public Function(Type returnType, String name, Type... parameterTypes) {
         super(name);
-        this.returnTypeName = returnType == null ? "void" : returnType.getName();
+        this.returnTypeName = returnType == null ? VOID : returnType.getSymbol();
         this.returnType = returnType;
         List<Variable> parameters = new ArrayList<Variable>();
         for (Type type: parameterTypes) {
@@ -77,7 +79,7 @@ public class Function extends Declarable {
     }
 
     public String getReturnTypeName() {
-        return returnTypeName;
+        return returnTypeName.getName();
     }
 
     /**
@@ -94,7 +96,7 @@ public class Function extends Declarable {
      * Performs semantic analysis on the function's signature and return type, but not the body.
      */
     public void analyzeSignature(AnalysisContext context) {
-        returnType = returnTypeName == "void" ? null : context.lookupType(returnTypeName);
+        returnType = returnTypeName == VOID ? null : context.lookupType(returnTypeName);
         body.createTable(context.getTable());
         for (Variable parameter: parameters) {
             body.getTable().insert(parameter, context.getLog());
@@ -141,4 +143,9 @@ public class Function extends Declarable {
 
         // TODO Look for and handle tail recursion if applicable.
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitFunction(this, context);
+    }
 }
@@ -64,4 +64,9 @@ public class IfStatement extends Statement {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitIfStatement(this, context);
+    }
 }
@@ -8,14 +8,14 @@ package edu.lmu.cs.xlg.carlos.entities;
 public class IncrementStatement extends Statement {
 
     private VariableExpression target;
-    private String op;
+    private Operator op;
 
-    public IncrementStatement(VariableExpression target, String op) {
+    public IncrementStatement(VariableExpression target, Operator op) {
         this.target = target;
         this.op = op;
     }
 
-    public String getOp() {
+    public Operator getOp() {
         return op;
     }
 
@@ -26,7 +26,7 @@ public class IncrementStatement extends Statement {
     @Override
     public void analyze(AnalysisContext context) {
         target.analyze(context);
-        target.assertInteger(op, context);
+        target.assertInteger(op.getText(), context);
     }
 
     @Override
@@ -34,4 +34,9 @@ public class IncrementStatement extends Statement {
         target = VariableExpression.class.cast(target.optimize());
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitIncrementStatement(this, context);
+    }
 }
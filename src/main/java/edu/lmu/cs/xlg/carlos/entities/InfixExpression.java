@@ -6,11 +6,11 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class InfixExpression extends Expression {
 
-    private String op;
+    private Operator op;
     private Expression left;
     private Expression right;
 
-    public InfixExpression(Expression left, String op, Expression right) {
+    public InfixExpression(Expression left, Operator op, Expression right) {
         this.left = left;
         this.op = op;
         this.right = right;
@@ -20,7 +20,7 @@ public class InfixExpression extends Expression {
         return left;
     }
 
-    public String getOp() {
+    public Operator getOp() {
         return op;
     }
 
@@ -33,46 +33,50 @@ public class InfixExpression extends Expression {
         left.analyze(context);
         right.analyze(context);
 
-        // num op num (for arithmetic op)
-        if (op.matches("\\+|-|\\*|/")) {
-            left.assertArithmetic(op, context);
-            right.assertArithmetic(op, context);
+        String text = op.getText();
+        switch (op.getCategory()) {
+        case ARITHMETIC:
+            left.assertArithmetic(text, context);
+            right.assertArithmetic(text, context);
             type = (left.type == Type.REAL || right.type == Type.REAL)
                 ? Type.REAL : Type.INT;
+            break;
 
-        // int op int (for shift, mod, or bitwise op)
-        } else if (op.matches("%|<<|>>|&|\\||\\^")) {
-            left.assertInteger(op, context);
-            right.assertInteger(op, context);
+        case INTEGRAL:
+            left.assertInteger(text, context);
+            right.assertInteger(text, context);
             type = Type.INT;
+            break;
 
-        // char/num/str op char/num/str (for inequalities except !=)
-        } else if (op.matches("<|<=|>|>=")) {
+        case RELATIONAL:
             if (left.type == Type.CHAR) {
-                right.assertChar(op, context);
+                right.assertChar(text, context);
             } else if (left.type == Type.STRING) {
-                right.assertString(op, context);
+                right.assertString(text, context);
             } else if (left.type.isArithmetic()){
-                left.assertArithmetic(op, context);
-                right.assertArithmetic(op, context);
+                left.assertArithmetic(text, context);
+                right.assertArithmetic(text, context);
             }
             type = Type.BOOLEAN;
+            break;
 
-        // any == any
-        // any != any
-        } else if (op.matches("==|!=")) {
+        case EQUALITY:
             if (!(left.isCompatibleWith(right.type)
             || right.isCompatibleWith(left.type))) {
-                context.error("non_compatible", op, left.type.getName(), right.type.getName());
+                context.error("non_compatible", text, left.type.getName(), right.type.getName());
             }
             type = Type.BOOLEAN;
+            break;
 
-        // bool && bool
-        // bool || bool
-        } else if (op.matches("&&|\\|\\|")) {
+        case LOGICAL:
             left.assertBoolean("logical_operand_not_boolean", context);
             right.assertBoolean("logical_operand_not_boolean", context);
             type = Type.BOOLEAN;
+            break;
+
+        default:
+            context.error("compiler_bug");
+            type = Type.ARBITRARY;
         }
     }
 
@@ -90,7 +94,7 @@ public class InfixExpression extends Expression {
     }
 
     public Expression optimizeBoolean() {
-        if (op == "&&") {
+        if (op == Operator.AND) {
             if (left.isFalse() || right.isFalse()) {
                 return BooleanLiteral.FALSE;
             } else if (left.isTrue()) {
@@ -100,7 +104,7 @@ public class InfixExpression extends Expression {
             } else if (left.sameVariableAs(right)) {
                 return left;
             }
-        } else if (op == "||") {
+        } else if (op == Operator.OR) {
             if (left.isTrue() || right.isTrue()) {
                 return BooleanLiteral.TRUE;
             } else if (left.isFalse()) {
@@ -123,29 +127,21 @@ public class InfixExpression extends Expression {
             double x = constantValue(left);
             double y = constantValue(right);
 
-            if ("+".equals(op)) return RealLiteral.fromValue(x + y);
-            else if ("-".equals(op)) return RealLiteral.fromValue(x - y);
-            else if ("*".equals(op)) return RealLiteral.fromValue(x * y);
-            else if ("/".equals(op) && y != 0) return RealLiteral.fromValue(x / y);
-            else if ("<".equals(op)) return BooleanLiteral.fromValue(x < y);
-            else if ("<=".equals(op)) return BooleanLiteral.fromValue(x <= y);
-            else if ("==".equals(op)) return BooleanLiteral.fromValue(x == y);
-            else if ("!=".equals(op)) return BooleanLiteral.fromValue(x != y);
-            else if (">=".equals(op)) return BooleanLiteral.fromValue(x >= y);
-            else if (">".equals(op)) return BooleanLiteral.fromValue(x > y);
-
-        } else if ("+".equals(op)) {
+            Literal folded = op.fold(x, y);
+            if (folded != null) return folded;
+
+        } else if (op == Operator.PLUS) {
             if (right.isZero()) return left;
             if (left.isZero()) return right;
-        } else if ("-".equals(op)) {
+        } else if (op == Operator.MINUS) {
             if (right.isZero()) return left;
             if (left.sameVariableAs(right)) return RealLiteral.fromValue(0);
-        } else if ("*".equals(op)) {
+        } else if (op == Operator.TIMES) {
             if (right.isOne()) return left;
             if (left.isOne()) return right;
             if (right.isZero()) return RealLiteral.fromValue(0);
             if (left.isZero()) return RealLiteral.fromValue(0);
-        } else if ("/".equals(op)) {
+        } else if (op == Operator.DIVIDE) {
             if (right.isOne()) return left;
             if (left.sameVariableAs(right)) return RealLiteral.fromValue(1);
         }
@@ -153,4 +149,9 @@ public class InfixExpression extends Expression {
         // Could not find any optimizations
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitInfixExpression(this, context);
+    }
 }
@@ -24,4 +24,9 @@ public class IntegerLiteral extends Literal {
             context.error("bad_int", getLexeme());
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitIntegerLiteral(this, context);
+    }
 }
@@ -1,19 +1,26 @@
 package edu.lmu.cs.xlg.carlos.entities;
 
 /**
- * The literal null.
+ * The literal null.  Like the boolean literals it is shared by every program, so its type is
+ * fixed when it is created.
  */
 public class NullLiteral extends Literal {
 
-    public static NullLiteral INSTANCE = new NullLiteral();
+    public static final NullLiteral INSTANCE = new NullLiteral();
 
     // Constructor is private because this class is a singleton.
     private NullLiteral() {
         super("null");
+        type = Type.NULL_TYPE;
     }
 
     @Override
     public void analyze(AnalysisContext context) {
-        type = Type.NULL_TYPE;
+        // Typed at creation
+    }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitNullLiteral(this, context);
     }
 }
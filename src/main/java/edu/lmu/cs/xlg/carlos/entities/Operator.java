@@ -0,0 +1,94 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+/**
+ * The operators of Carlos.  The parser produces these directly, so no later phase ever has to
+ * look at operator text.  Each operator knows its source spelling, which is also what
+ * <code>toString()</code> returns, and its category, which selects the typing rule applied to
+ * it during semantic analysis.  Note that "-" appears twice, once as the infix minus and once as
+ * the prefix negation.
+ */
+public enum Operator {
+
+    OR("||", Category.LOGICAL),
+    AND("&&", Category.LOGICAL),
+    BITOR("|", Category.INTEGRAL),
+    BITXOR("^", Category.INTEGRAL),
+    BITAND("&", Category.INTEGRAL),
+    LESS("<", Category.RELATIONAL),
+    LESS_OR_EQUAL("<=", Category.RELATIONAL),
+    EQUAL("==", Category.EQUALITY),
+    NOT_EQUAL("!=", Category.EQUALITY),
+    GREATER_OR_EQUAL(">=", Category.RELATIONAL),
+    GREATER(">", Category.RELATIONAL),
+    SHIFT_LEFT("<<", Category.INTEGRAL),
+    SHIFT_RIGHT(">>", Category.INTEGRAL),
+    PLUS("+", Category.ARITHMETIC),
+    MINUS("-", Category.ARITHMETIC),
+    TIMES("*", Category.ARITHMETIC),
+    DIVIDE("/", Category.ARITHMETIC),
+    MODULO("%", Category.INTEGRAL),
+
+    NEGATE("-", Category.UNARY),
+    NOT("!", Category.UNARY),
+    COMPLEMENT("~", Category.UNARY),
+    TO_INT("int", Category.UNARY),
+    TO_CHAR("char", Category.UNARY),
+    TO_STRING("string", Category.UNARY),
+    LENGTH("length", Category.UNARY),
+    INCREMENT("++", Category.UNARY),
+    DECREMENT("--", Category.UNARY);
+
+    /**
+     * The typing rules for operators.  Infix operators are typed by category; the unary
+     * operators each have their own rule.
+     * <ul>
+     *   <li>ARITHMETIC: num op num, yielding real if either operand is real, else int
+     *   <li>INTEGRAL: int op int, yielding int
+     *   <li>RELATIONAL: char/num/str op char/num/str, yielding boolean
+     *   <li>EQUALITY: any op any, for compatible operands, yielding boolean
+     *   <li>LOGICAL: bool op bool, yielding boolean
+     * </ul>
+     */
+    public static enum Category {ARITHMETIC, INTEGRAL, RELATIONAL, EQUALITY, LOGICAL, UNARY}
+
+    private final String text;
+    private final Category category;
+
+    private Operator(String text, Category category) {
+        this.text = text;
+        this.category = category;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the literal resulting from applying this (infix) operator to two numeric
+     * constants, or null if the operator is not folded for these operands.
+     */
+    Literal fold(double x, double y) {
+        switch (this) {
+        case PLUS: return RealLiteral.fromValue(x + y);
+        case MINUS: return RealLiteral.fromValue(x - y);
+        case TIMES: return RealLiteral.fromValue(x * y);
+        case DIVIDE: return y == 0 ? null : RealLiteral.fromValue(x / y);
+        case LESS: return BooleanLiteral.fromValue(x < y);
+        case LESS_OR_EQUAL: return BooleanLiteral.fromValue(x <= y);
+        case EQUAL: return BooleanLiteral.fromValue(x == y);
+        case NOT_EQUAL: return BooleanLiteral.fromValue(x != y);
+        case GREATER_OR_EQUAL: return BooleanLiteral.fromValue(x >= y);
+        case GREATER: return BooleanLiteral.fromValue(x > y);
+        default: return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
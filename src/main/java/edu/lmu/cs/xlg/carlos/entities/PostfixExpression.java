@@ -5,15 +5,15 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class PostfixExpression extends Expression {
 
-    private String op;
+    private Operator op;
     private VariableExpression operand;
 
-    public PostfixExpression(VariableExpression operand, String op) {
+    public PostfixExpression(VariableExpression operand, Operator op) {
         this.op = op;
         this.operand = operand;
     }
 
-    public String getOp() {
+    public Operator getOp() {
         return op;
     }
 
@@ -24,8 +24,13 @@ public class PostfixExpression extends Expression {
     @Override
     public void analyze(AnalysisContext context) {
         operand.analyze(context);
-        operand.assertInteger(op, context);
+        operand.assertInteger(op.getText(), context);
         operand.assertWritable(context);
         type = Type.INT;
    }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitPostfixExpression(this, context);
+    }
 }
@@ -5,15 +5,15 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class PrefixExpression extends Expression {
 
-    private String op;
+    private Operator op;
     private Expression operand;
 
-    public PrefixExpression(String op, Expression operand) {
+    public PrefixExpression(Operator op, Expression operand) {
         this.op = op;
         this.operand = operand;
     }
 
-    public String getOp() {
+    public Operator getOp() {
         return op;
     }
 
@@ -25,41 +25,57 @@ public class PrefixExpression extends Expression {
     public void analyze(AnalysisContext context) {
         operand.analyze(context);
 
-        if ("!".equals(op)) {
+        String text = op.getText();
+        switch (op) {
+        case NOT:
             operand.assertBoolean("boolean_operand_expected_for_not", context);
             type = Type.BOOLEAN;
+            break;
 
-        } else if ("-".equals(op)) {
-            operand.assertArithmetic(op, context);
+        case NEGATE:
+            operand.assertArithmetic(text, context);
             type = operand.type;
+            break;
 
-        } else if ("~".equals(op)) {
-            operand.assertInteger(op, context);
+        case COMPLEMENT:
+            operand.assertInteger(text, context);
             type = Type.INT;
+            break;
 
-        } else if ("int".equals(op)) {
-            operand.assertChar(op, context);
+        case TO_INT:
+            operand.assertChar(text, context);
             type = Type.INT;
+            break;
 
-        } else if ("char".equals(op)) {
-            operand.assertInteger(op, context);
+        case TO_CHAR:
+            operand.assertInteger(text, context);
             type = Type.CHAR;
+            break;
 
-        } else if ("string".equals(op)) {
+        case TO_STRING:
             type = Type.STRING;
+            break;
 
-        } else if ("length".equals(op)) {
-            operand.assertArrayOrString(op, context);
+        case LENGTH:
+            operand.assertArrayOrString(text, context);
             type = Type.INT;
+            break;
 
-        } else if ("++".equals(op) || "--".equals(op)) {
-            operand.assertInteger(op, context);
+        case INCREMENT:
+        case DECREMENT:
+            operand.assertInteger(text, context);
             VariableExpression.class.cast(operand).assertWritable(context);
             type = Type.INT;
+            break;
 
-        } else {
+        default:
             context.error("compiler_bug");
             type = Type.ARBITRARY;
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitPrefixExpression(this, context);
+    }
 }
@@ -32,4 +32,9 @@ public class PrintStatement extends Statement {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitPrintStatement(this, context);
+    }
 }
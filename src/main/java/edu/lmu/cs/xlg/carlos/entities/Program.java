@@ -11,4 +11,9 @@ public class Program extends Block {
     public Program(List<Statement> statements) {
         super(statements);
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitProgram(this, context);
+    }
 }
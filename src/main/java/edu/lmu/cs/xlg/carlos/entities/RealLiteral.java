@@ -29,6 +29,12 @@ public class RealLiteral extends Literal {
     static RealLiteral fromValue(double value) {
         RealLiteral result = new RealLiteral(Double.toString(value));
         result.value = value;
+        result.type = Type.REAL;
         return result;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitRealLiteral(this, context);
+    }
 }
@@ -46,4 +46,9 @@ public class ReturnStatement extends Statement {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitReturnStatement(this, context);
+    }
 }
@@ -5,15 +5,15 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class SimpleVariableReference extends VariableExpression {
 
-    private String name;
+    private Symbol name;
     private Variable referent;
 
     public SimpleVariableReference(String name) {
-        this.name = name;
+        this.name = Symbol.forName(name);
     }
 
     public String getName() {
-        return name;
+        return name.getName();
     }
 
     public Variable getReferent() {
@@ -32,4 +32,9 @@ public class SimpleVariableReference extends VariableExpression {
     public boolean isWritable() {
        return true;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitSimpleVariableReference(this, context);
+    }
 }
@@ -22,4 +22,9 @@ public class StringLiteral extends Literal {
         type = Type.STRING;
         values = CharLiteral.codepoints(getLexeme(), 1, getLexeme().length() - 1, context);
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitStringLiteral(this, context);
+    }
 }
@@ -13,16 +13,16 @@ import java.util.List;
  */
 public class StructAggregate extends Expression {
 
-    private String typename;
+    private Symbol typename;
     private List<Expression> args;
 
     public StructAggregate(String typename, List<Expression> args) {
-        this.typename = typename;
+        this.typename = Symbol.forName(typename);
         this.args = args;
     }
 
     public String getTypename() {
-        return typename;
+        return typename.getName();
     }
 
     public List<Expression> getArgs() {
@@ -53,4 +53,9 @@ public class StructAggregate extends Expression {
             a.assertAssignableTo(f.getType(), "struct_aggregate_type_mismatch", context);
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitStructAggregate(this, context);
+    }
 }
@@ -5,9 +5,10 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class StructField extends Entity {
 
-    private String name;
-    private String typename;
+    private Symbol name;
+    private Symbol typename;
     private Type type;
+    private transient int slot = -1;
 
     /**
      * An arbitrary field, useful in semantic analysis to take the place of a field that has not
@@ -18,24 +19,45 @@ public class StructField extends Entity {
     static {ARBITRARY.type = Type.ARBITRARY;}
 
     public StructField(String name, String typename) {
-        this.name = name;
-        this.typename = typename;
+        this.name = Symbol.forName(name);
+        this.typename = Symbol.forName(typename);
     }
 
     public String getName() {
+        return name.getName();
+    }
+
+    public Symbol getSymbol() {
         return name;
     }
 
     public String getTypename() {
-        return typename;
+        return typename.getName();
     }
 
     public Type getType() {
         return type;
     }
 
+    /**
+     * Returns the position of this field within its struct type, counting from zero, or -1 if
+     * the struct type has not been analyzed.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     @Override
     public void analyze(AnalysisContext context) {
         type = context.lookupType(typename);
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitStructField(this, context);
+    }
 }
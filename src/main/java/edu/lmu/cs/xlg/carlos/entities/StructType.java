@@ -1,15 +1,19 @@
 package edu.lmu.cs.xlg.carlos.entities;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * A type which is a struct.
+ *
+ * Analysis numbers the fields by position and indexes them by name, so that finding a field is
+ * a single hash lookup however many fields the struct has.
  */
 public class StructType extends Type {
 
     private List<StructField> fields;
+    private transient Map<Symbol, StructField> fieldsByName;
 
     public StructType(String name, List<StructField> fields) {
         super(name);
@@ -22,12 +26,17 @@ public class StructType extends Type {
 
     @Override
     public void analyze(AnalysisContext context) {
-        Set<String> fieldNames = new HashSet<String>();
+        Map<Symbol, StructField> index = new HashMap<Symbol, StructField>();
+        int slot = 0;
         for (StructField field: fields) {
-            if (! fieldNames.add(field.getName())) {
+            field.setSlot(slot++);
+            if (index.containsKey(field.getSymbol())) {
                 context.error("duplicate_field", field.getName(), this.getName());
+            } else {
+                index.put(field.getSymbol(), field);
             }
         }
+        fieldsByName = index;
 
         for (StructField field: fields) {
             field.analyze(context);
@@ -38,15 +47,19 @@ public class StructType extends Type {
      * Returns the field in this type with the given name.  If no
      * such field exists, log an error and return an "arbitrary" field.
      */
-    public StructField getField(String fieldName, AnalysisContext context) {
-        for (StructField field: fields) {
-            if (field.getName().equals(fieldName)) {
-                return field;
-            }
+    public StructField getField(Symbol fieldName, AnalysisContext context) {
+        StructField field = fieldsByName == null ? null : fieldsByName.get(fieldName);
+        if (field != null) {
+            return field;
         }
 
         // Didn't find it, use the placeholder.
-        context.error("no_such_field", this.getName(), fieldName);
+        context.error("no_such_field", this.getName(), fieldName.getName());
         return StructField.ARBITRARY;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitStructType(this, context);
+    }
 }
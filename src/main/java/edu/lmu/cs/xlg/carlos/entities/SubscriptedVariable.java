@@ -37,4 +37,9 @@ public class SubscriptedVariable extends VariableExpression {
         // It's writable if an array, but not writable if it is a string
         return sequence.type.isArray();
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitSubscriptedVariable(this, context);
+    }
 }
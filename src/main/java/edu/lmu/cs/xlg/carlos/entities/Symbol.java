@@ -0,0 +1,121 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interned identifier.
+ *
+ * Every distinct name gets exactly one symbol, numbered in the order the names are first seen,
+ * so symbols can be compared with == and symbol tables can index on the number instead of
+ * hashing the characters of the name.  Entities intern the names they declare or refer to when
+ * they are constructed, which happens during parsing.
+ *
+ * A name ending in "[]" denotes an array type; its symbol knows the symbol of the name with one
+ * fewer pair of brackets.  The intern table is shared by all compilations but holds its symbols
+ * weakly, so a symbol no longer referred to by any entity is dropped, and a long-running
+ * compile server does not keep every name it was ever sent.  As long as a symbol is reachable
+ * its name maps to it, so no two live symbols have the same name; a name seen again after its
+ * symbol was dropped just gets a new one.
+ */
+public final class Symbol {
+
+    private static final ConcurrentMap<String, Entry> table =
+        new ConcurrentHashMap<String, Entry>();
+    private static final ReferenceQueue<Symbol> dropped = new ReferenceQueue<Symbol>();
+    private static final AtomicInteger nextIndex = new AtomicInteger(0);
+
+    private final String name;
+    private final int index;
+    private final Symbol component;
+
+    private Symbol(String name, int index, Symbol component) {
+        this.name = name;
+        this.index = index;
+        this.component = component;
+    }
+
+    /**
+     * Returns the symbol for the given name, creating it if this is the first time the name has
+     * been seen.  Returns null for a null name.
+     */
+    public static Symbol forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        Entry entry = table.get(name);
+        Symbol symbol = entry == null ? null : entry.get();
+        if (symbol != null) {
+            return symbol;
+        }
+
+        expunge();
+        Symbol component = name.endsWith("[]")
+            ? forName(name.substring(0, name.length() - 2)) : null;
+        symbol = new Symbol(name, nextIndex.getAndIncrement(), component);
+        Entry created = new Entry(symbol);
+        while (true) {
+            Entry existing = table.putIfAbsent(name, created);
+            if (existing == null) {
+                return symbol;
+            }
+            Symbol other = existing.get();
+            if (other != null) {
+                return other;
+            }
+            if (table.replace(name, existing, created)) {
+                return symbol;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of the symbols that have been dropped, unless they have already been
+     * replaced by a new symbol for the same name.
+     */
+    private static void expunge() {
+        Entry entry;
+        while ((entry = (Entry)dropped.poll()) != null) {
+            table.remove(entry.name, entry);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of this symbol, unique among all live symbols.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns, for an array type name, the symbol for the name of its base type, otherwise null.
+     */
+    public Symbol getComponent() {
+        return component;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * A weak reference to a symbol that remembers the name it is filed under, so it can be
+     * removed from the table once the symbol is gone.
+     */
+    private static final class Entry extends WeakReference<Symbol> {
+        private final String name;
+
+        Entry(Symbol symbol) {
+            super(symbol, dropped);
+            this.name = symbol.name;
+        }
+    }
+}
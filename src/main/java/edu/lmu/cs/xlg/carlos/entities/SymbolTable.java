@@ -1,7 +1,10 @@
 package edu.lmu.cs.xlg.carlos.entities;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -10,20 +13,83 @@ import edu.lmu.cs.xlg.util.Log;
 
 /**
  * Simple symbol table.
+ *
+ * Each table is a small open-addressed hash table keyed by symbol number, so a probe is an
+ * integer mask and a reference comparison, with no string hashing at any level of the
+ * ancestor chain.  Tables start with room for a handful of entries and double when they get
+ * half full.
+ *
+ * Calls to overloaded functions are resolved once per distinct list of argument types.  The
+ * table that declares a function remembers, for each name and argument type list, which
+ * overload was chosen (or which error was reported), along with an index of its overloads by
+ * number of parameters.  Both are dropped whenever another function with that name is inserted.
  */
 public class SymbolTable extends Entity {
 
-    // The actual contents of the symbol table.  Names map to entities.
-    Map<String, Entity> map = new HashMap<String, Entity>();
+    private static final int INITIAL_CAPACITY = 8;
+
+    // The names declared in this table, in the order they were first inserted.
+    private List<Symbol> names = new ArrayList<Symbol>();
+
+    // The actual contents of the symbol table.  Symbols map to entities; a slot whose key is
+    // null is empty.  The capacity is always a power of two.
+    private transient Symbol[] keys = new Symbol[INITIAL_CAPACITY];
+    private transient Declarable[] values = new Declarable[INITIAL_CAPACITY];
 
     // The table to look in if you can't find what you want here.
     SymbolTable parent;
 
+    // Overload indexes and resolved calls for the functions declared in this table, created
+    // when first needed.
+    private transient Map<Symbol, Function[][]> overloadsByArity;
+    private transient Map<Call, Resolution> resolutions;
+
+    /**
+     * A call to be resolved: the function name and the types of the arguments.
+     */
+    private static final class Call {
+        private final Symbol symbol;
+        private final Type[] argTypes;
+
+        Call(Symbol symbol, List<Expression> args) {
+            this.symbol = symbol;
+            this.argTypes = new Type[args.size()];
+            for (int i = 0; i < argTypes.length; i++) {
+                argTypes[i] = args.get(i).getType();
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Call && ((Call)o).symbol == symbol
+                && Arrays.equals(((Call)o).argTypes, argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * symbol.getIndex() + Arrays.hashCode(argTypes);
+        }
+    }
+
+    /**
+     * The outcome of resolving a call: either the function called, or the error to report.
+     */
+    private static final class Resolution {
+        private final Function function;
+        private final String errorKey;
+        private final Object[] errorArguments;
+
+        Resolution(Function function, String errorKey, Object... errorArguments) {
+            this.function = function;
+            this.errorKey = errorKey;
+            this.errorArguments = errorArguments;
+        }
+    }
+
     /**
      * Creates a symbol table with the given parent.
      */
     public SymbolTable(SymbolTable parent) {
-        this.map = new HashMap<String, Entity>();
         this.parent = parent;
     }
 
@@ -33,7 +99,10 @@ public class SymbolTable extends Entity {
      * unless each declaration is a function.
      */
     public void insert(Declarable d, Log log) {
-        Object oldValue = map.put(d.getName(), d);
+        Declarable oldValue = put(d.getSymbol(), d);
+        if (d instanceof Function) {
+            forgetOverloads(d.getSymbol());
+        }
 
         if (oldValue == null) {
             // No other entity in this symbol had this name, we're okay.
@@ -53,28 +122,24 @@ public class SymbolTable extends Entity {
      * Looks up a type in this table, or if not found, searches along its
      * ancestor chain.
      *
-     * @param name the name of the type being searched for.
+     * @param symbol the name of the type being searched for.
      * @return the innermost visible type with that name.  If not found,
      * or if the value found is not a type object, logs an error message
-     * and returns Type.ANY.
+     * and returns Type.ARBITRARY.
      */
-    public Type lookupType(String name, Log log) {
-        if (name.endsWith("[]")) {
-            return lookupType(name.substring(0,name.length()-2), log).array();
+    public Type lookupType(Symbol symbol, Log log) {
+        if (symbol.getComponent() != null) {
+            return lookupType(symbol.getComponent(), log).array();
         }
 
-        Object value = map.get(name);
+        Declarable value = find(symbol);
         if (value == null) {
-            if (parent == null) {
-                log.error("type_not_found", name);
-                return Type.ARBITRARY;
-            } else {
-                return parent.lookupType(name, log);
-            }
+            log.error("type_not_found", symbol.getName());
+            return Type.ARBITRARY;
         } else if (value instanceof Type) {
             return (Type)value;
         } else {
-            log.error("not_a_type", name);
+            log.error("not_a_type", symbol.getName());
             return Type.ARBITRARY;
         }
     }
@@ -83,24 +148,20 @@ public class SymbolTable extends Entity {
      * Looks up a variable in this table, or if not found, searches along
      * its ancestor chain.
      *
-     * @param name the name of the variable being searched for.
+     * @param symbol the name of the variable being searched for.
      * @return the innermost visible variable with that name.  If not found,
      * or if the value found is not a variable object, logs an error message
      * and returns Variable.ARBITRARY.
      */
-    public Variable lookupVariable(String name, Log log) {
-        Object value = map.get(name);
+    public Variable lookupVariable(Symbol symbol, Log log) {
+        Declarable value = find(symbol);
         if (value == null) {
-            if (parent == null) {
-                log.error("variable_not_found", name);
-                return Variable.ARBITRARY;
-            } else {
-                return parent.lookupVariable(name, log);
-            }
+            log.error("variable_not_found", symbol.getName());
+            return Variable.ARBITRARY;
         } else if (value instanceof Variable) {
             return (Variable)value;
         } else {
-            log.error("not_a_variable", name);
+            log.error("not_a_variable", symbol.getName());
             return Variable.ARBITRARY;
         }
     }
@@ -109,7 +170,7 @@ public class SymbolTable extends Entity {
      * Looks up a function in this table, or if not found, searches along
      * its ancestor chain.
      *
-     * @param name the name of the function to search for.
+     * @param symbol the name of the function to search for.
      * @param args the argument list used to call the function, required
      * since the language supports overloading.
      * @param log the logger for messages and errors.
@@ -117,43 +178,25 @@ public class SymbolTable extends Entity {
      * matches the argument list provided there is only one match, or
      * null if there are either zero or more than one visible matches.
      */
-    public Function lookupFunction(String name, List<Expression> args, Log log) {
-        Object value = map.get(name);
+    public Function lookupFunction(Symbol symbol, List<Expression> args, Log log) {
+        SymbolTable owner = owner(symbol);
 
-        if (value == null) {
-            // Not found here -- keep searching if possible, else error out.
-            if (parent == null) {
-                log.error("function_not_found", name);
-                return null;
-            } else {
-                return parent.lookupFunction(name, args, log);
-            }
+        if (owner == null) {
+            // Not found anywhere
+            log.error("function_not_found", symbol.getName());
+            return null;
 
-        } else if (value instanceof Function) {
-            // Got a function, make sure it is the ONLY callable one
-            Function candidate = null;
-            for (Function f = (Function)value; f != null; f = f.getOverload()) {
-                if (f.canBeCalledWith(args)) {
-                    if (candidate != null) {
-                        // Second match.
-                        log.error("multiple_callables", f.getName());
-                        return null;
-                    }
-                    candidate = f;
-                }
-            }
-            if (candidate != null) {
-                // Sole match!
-                return candidate;
+        } else if (owner.get(symbol) instanceof Function) {
+            // Got a function, use the resolution remembered by its table
+            Resolution resolution = owner.resolve(symbol, args);
+            if (resolution.errorKey != null) {
+                log.error(resolution.errorKey, resolution.errorArguments);
             }
-
-            // No matches.
-            log.error("non_matching_args", name, args.size() + "");
-            return null;
+            return resolution.function;
 
         } else {
             // Found something other than a function
-            log.error("not_a_function", name);
+            log.error("not_a_function", symbol.getName());
             return null;
         }
     }
@@ -165,7 +208,7 @@ public class SymbolTable extends Entity {
      */
     public Set<Object> getEntitiesByClass(Class<?> c) {
         Set<Object> result = new HashSet<Object>();
-        for (Object value: map.values()) {
+        for (Declarable value: values) {
             if (c.isInstance(value)) {
                 result.add(value);
             }
@@ -173,8 +216,172 @@ public class SymbolTable extends Entity {
         return result;
     }
 
+    /**
+     * Returns the innermost entity with the given name visible from this table, or null.
+     */
+    private Declarable find(Symbol symbol) {
+        SymbolTable owner = owner(symbol);
+        return owner == null ? null : owner.get(symbol);
+    }
+
+    /**
+     * Returns the innermost table, starting with this one, that has an entry for the given
+     * name, or null.
+     */
+    private SymbolTable owner(Symbol symbol) {
+        for (SymbolTable table = this; table != null; table = table.parent) {
+            if (table.get(symbol) != null) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a call to the function with the given name declared in this table, given its
+     * already analyzed arguments.  The function must be the ONLY overload that can be called
+     * with arguments of these types.
+     */
+    private synchronized Resolution resolve(Symbol symbol, List<Expression> args) {
+        Call call = new Call(symbol, args);
+        if (resolutions == null) {
+            resolutions = new HashMap<Call, Resolution>();
+        }
+        Resolution resolution = resolutions.get(call);
+        if (resolution != null) {
+            return resolution;
+        }
+
+        Function candidate = null;
+        for (Function f: overloads(symbol, args.size())) {
+            if (f.canBeCalledWith(args)) {
+                if (candidate != null) {
+                    // Second match.
+                    resolution = new Resolution(null, "multiple_callables", f.getName());
+                    break;
+                }
+                candidate = f;
+            }
+        }
+        if (resolution == null) {
+            resolution = candidate != null
+                // Sole match!
+                ? new Resolution(candidate, null)
+                // No matches.
+                : new Resolution(null, "non_matching_args", symbol.getName(), args.size() + "");
+        }
+        resolutions.put(call, resolution);
+        return resolution;
+    }
+
+    /**
+     * Returns the overloads with the given name in this table that take the given number of
+     * parameters, most recently declared first.
+     */
+    private Function[] overloads(Symbol symbol, int arity) {
+        if (overloadsByArity == null) {
+            overloadsByArity = new HashMap<Symbol, Function[][]>();
+        }
+        Function[][] index = overloadsByArity.get(symbol);
+        if (index == null) {
+            int maxArity = -1;
+            for (Function f = (Function)get(symbol); f != null; f = f.getOverload()) {
+                maxArity = Math.max(maxArity, f.getParameters().size());
+            }
+            List<List<Function>> lists = new ArrayList<List<Function>>();
+            for (int i = 0; i <= maxArity; i++) {
+                lists.add(new ArrayList<Function>());
+            }
+            for (Function f = (Function)get(symbol); f != null; f = f.getOverload()) {
+                lists.get(f.getParameters().size()).add(f);
+            }
+            index = new Function[maxArity + 1][];
+            for (int i = 0; i <= maxArity; i++) {
+                index[i] = lists.get(i).toArray(new Function[lists.get(i).size()]);
+            }
+            overloadsByArity.put(symbol, index);
+        }
+        return arity < index.length ? index[arity] : new Function[0];
+    }
+
+    /**
+     * Drops the overload index and resolved calls for the given name, after a function with
+     * that name has been inserted.
+     */
+    private synchronized void forgetOverloads(Symbol symbol) {
+        if (overloadsByArity != null) {
+            overloadsByArity.remove(symbol);
+        }
+        if (resolutions != null) {
+            for (Iterator<Call> it = resolutions.keySet().iterator(); it.hasNext();) {
+                if (it.next().symbol == symbol) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the entity with the given name in this table only, or null.
+     */
+    private Declarable get(Symbol symbol) {
+        int mask = keys.length - 1;
+        for (int i = symbol.getIndex() & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == symbol) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the given name to the given entity in this table, returning the entity it was
+     * previously mapped to, or null if it was not in the table.
+     */
+    private Declarable put(Symbol symbol, Declarable value) {
+        int mask = keys.length - 1;
+        int i = symbol.getIndex() & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == symbol) {
+                Declarable oldValue = values[i];
+                values[i] = value;
+                return oldValue;
+            }
+        }
+        keys[i] = symbol;
+        values[i] = value;
+        names.add(symbol);
+        if (names.size() * 2 > keys.length) {
+            rehash();
+        }
+        return null;
+    }
+
+    private void rehash() {
+        Symbol[] oldKeys = keys;
+        Declarable[] oldValues = values;
+        keys = new Symbol[oldKeys.length * 2];
+        values = new Declarable[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldKeys[j].getIndex() & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
     @Override
     public void analyze(AnalysisContext context) {
         // Intentionally empty
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitSymbolTable(this, context);
+    }
 }
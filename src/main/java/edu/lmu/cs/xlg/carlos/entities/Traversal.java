@@ -0,0 +1,158 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+import edu.lmu.cs.xlg.carlos.entities.Entity.Visitor;
+import edu.lmu.cs.xlg.carlos.entities.EntityLayout.Kind;
+import edu.lmu.cs.xlg.carlos.entities.EntityLayout.Slot;
+
+/**
+ * A depth-first walk over a semantic graph, visiting each reachable entity once.
+ *
+ * The walk uses an explicit stack rather than recursion, so arbitrarily deep graphs can be
+ * walked, and remembers the entities it has seen in a bit set indexed by entity id.  Entities
+ * are reached through the child slots of their parents' layouts, in field order, so the order
+ * of visits is the same as that of a plain recursive walk.
+ *
+ * The visitor's onEntry is called when an entity is first reached and its onExit after all of
+ * its children are done.  Two refinements are available:
+ * <ul>
+ *   <li>A restriction to a class, in which case only entities of that class are passed to the
+ *       visitor, though the walk still goes through the others to reach them.
+ *   <li>A pruner, which is asked about each entity after its onEntry; when it says so, the
+ *       children of that entity are not walked.
+ * </ul>
+ * For example, to see only the statements of a program, restrict to Statement and prune at
+ * every Expression.
+ */
+public class Traversal {
+
+    /**
+     * Decides whether the children of an entity should be skipped.
+     */
+    public static interface Pruner {
+        boolean prune(Entity e);
+    }
+
+    private Visitor visitor;
+    private Class<? extends Entity> restriction = Entity.class;
+    private Pruner pruner = null;
+
+    // The stack.  Each level holds an entity, the index of its next child slot, and, when the
+    // walk is inside a list of children, the iterator over that list.
+    private Entity[] entities = new Entity[64];
+    private int[] slotIndexes = new int[64];
+    private Iterator<?>[] iterators = new Iterator<?>[64];
+    private int depth = 0;
+
+    public Traversal(Visitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Reports only entities of the given class to the visitor.
+     */
+    public Traversal restrictTo(Class<? extends Entity> restriction) {
+        this.restriction = restriction;
+        return this;
+    }
+
+    /**
+     * Skips the children of each entity for which the given pruner says so.
+     */
+    public Traversal pruneWith(Pruner pruner) {
+        this.pruner = pruner;
+        return this;
+    }
+
+    /**
+     * Walks the graph reachable from the given root.
+     */
+    public void run(Entity root) {
+        BitSet visited = new BitSet();
+        enter(root, visited);
+
+        while (depth > 0) {
+            int top = depth - 1;
+            Entity e = entities[top];
+            Entity next = null;
+
+            // Find the next unvisited child of the entity on top of the stack.
+            Slot[] slots = e.layout().getChildSlots();
+            while (next == null) {
+                Iterator<?> it = iterators[top];
+                if (it != null) {
+                    if (it.hasNext()) {
+                        next = (Entity) it.next();
+                    } else {
+                        iterators[top] = null;
+                    }
+                } else if (slotIndexes[top] < slots.length) {
+                    Slot slot = slots[slotIndexes[top]++];
+                    Object value = slot.get(e);
+                    if (value == null) {
+                        continue;
+                    } else if (slot.getKind() == Kind.ENTITY) {
+                        next = (Entity) value;
+                    } else {
+                        iterators[top] = ((Iterable<?>) value).iterator();
+                    }
+                } else {
+                    break;
+                }
+                if (next != null && visited.get(next.getId())) {
+                    next = null;
+                }
+            }
+
+            if (next != null) {
+                enter(next, visited);
+            } else {
+                depth--;
+                entities[depth] = null;
+                if (restriction.isInstance(e)) {
+                    visitor.onExit(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks an entity visited, calls onEntry for it, and unless it is pruned, pushes it so its
+     * children get walked.  A pruned entity gets its onExit right away.
+     */
+    private void enter(Entity e, BitSet visited) {
+        visited.set(e.getId());
+        boolean reported = restriction.isInstance(e);
+        if (reported) {
+            visitor.onEntry(e);
+        }
+        if (pruner != null && pruner.prune(e)) {
+            if (reported) {
+                visitor.onExit(e);
+            }
+            return;
+        }
+        if (depth == entities.length) {
+            grow();
+        }
+        entities[depth] = e;
+        slotIndexes[depth] = 0;
+        iterators[depth] = null;
+        depth++;
+    }
+
+    private void grow() {
+        int capacity = entities.length * 2;
+        Entity[] newEntities = new Entity[capacity];
+        int[] newSlotIndexes = new int[capacity];
+        Iterator<?>[] newIterators = new Iterator<?>[capacity];
+        System.arraycopy(entities, 0, newEntities, 0, depth);
+        System.arraycopy(slotIndexes, 0, newSlotIndexes, 0, depth);
+        System.arraycopy(iterators, 0, newIterators, 0, depth);
+        entities = newEntities;
+        slotIndexes = newSlotIndexes;
+        iterators = newIterators;
+    }
+}
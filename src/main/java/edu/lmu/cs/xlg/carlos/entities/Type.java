@@ -60,13 +60,28 @@ public class Type extends Declarable {
     }
 
     /**
-     * Returns the type that is an array of this type, lazily creating it.
+     * Returns the type that is an array of this type, lazily creating it.  The array type of a
+     * type from outside the running compilation, such as a built-in type, is kept in the
+     * compilation's registry instead of in this type, so that a semantic graph never reaches
+     * entities of another compilation.  Either way, tasks analyzing parts of a program
+     * concurrently all get the same array type.
      */
     public Type array() {
-        if (arrayOfThisType == null) {
-            arrayOfThisType = new ArrayType(this);
+        EntityRegistry registry = EntityRegistry.current();
+        if (registry != null && !registry.owns(this)) {
+            return registry.arrayOf(this);
         }
-        return arrayOfThisType;
+        ArrayType result;
+        synchronized (this) {
+            if (arrayOfThisType == null) {
+                arrayOfThisType = new ArrayType(this);
+            }
+            result = arrayOfThisType;
+        }
+        if (registry != null) {
+            registry.share(result);
+        }
+        return result;
     }
 
     @Override
@@ -74,4 +89,9 @@ public class Type extends Declarable {
         // Intentionally empty - here only because it's nice to have primitives be of this class.
         // The subclasses ArrayType and StructType still need to override this.
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitType(this, context);
+    }
 }
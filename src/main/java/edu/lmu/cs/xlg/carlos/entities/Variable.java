@@ -5,7 +5,7 @@ package edu.lmu.cs.xlg.carlos.entities;
  */
 public class Variable extends Declarable {
 
-    private String typename;
+    private Symbol typename;
     private Expression initializer;
     private Type type;
 
@@ -18,7 +18,7 @@ public class Variable extends Declarable {
 
     public Variable(String name, String typename, Expression initializer) {
         super(name);
-        this.typename = typename;
+        this.typename = Symbol.forName(typename);
         this.initializer = initializer;
     }
 
@@ -29,7 +29,7 @@ public class Variable extends Declarable {
      */
     public Variable(String name, Type type) {
         super(name);
-        this.typename = type.getName();
+        this.typename = type.getSymbol();
         this.initializer = null;
         this.type = type;
     }
@@ -39,7 +39,7 @@ public class Variable extends Declarable {
     }
 
     public String getTypename() {
-        return typename;
+        return typename.getName();
     }
 
     public Type getType() {
@@ -63,4 +63,9 @@ public class Variable extends Declarable {
             initializer = initializer.optimize();
         }
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitVariable(this, context);
+    }
 }
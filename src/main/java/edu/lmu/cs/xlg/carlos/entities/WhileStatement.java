@@ -38,4 +38,9 @@ public class WhileStatement extends Statement {
         }
         return this;
     }
+
+    @Override
+    public <R, C> R accept(EntityVisitor<R, C> visitor, C context) {
+        return visitor.visitWhileStatement(this, context);
+    }
 }
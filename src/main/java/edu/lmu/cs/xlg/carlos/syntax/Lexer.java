@@ -0,0 +1,449 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+/**
+ * A hand-written token manager for Carlos, producing exactly the tokens, positions and lexical
+ * errors of the token manager JavaCC generates from the grammar, only faster.
+ *
+ * The generated token manager pulls one character at a time through the stream and runs every
+ * character through a general automaton.  This one scans the source's character array directly,
+ * classifying each character with a table lookup and recognizing each kind of token with a loop
+ * written for it.  Scanning a token with {@link #next()} only records its kind and its start
+ * and end offsets; a {@link Token} is made only when the parser asks for one.  Keywords and
+ * symbols then share the images of the generated token manager, and each distinct identifier
+ * gets a single image, found from the characters without first copying them out.
+ *
+ * Since the parser only ever calls {@link #getNextToken()} and <code>ReInit</code>, a lexer can
+ * be given to the parser wherever the generated token manager would be.  It only reads from a
+ * {@link SourceStream}, and asks the stream for lines and columns, so these come out the same.
+ */
+public class Lexer extends ParserTokenManager {
+
+    // Character classes.  Underscores can continue an identifier but not start one, and a slash
+    // is a symbol unless it starts a comment.
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte LETTER = 2;
+    private static final byte DIGIT = 3;
+    private static final byte UNDERSCORE = 4;
+    private static final byte QUOTE = 5;
+    private static final byte DOUBLE_QUOTE = 6;
+    private static final byte SLASH = 7;
+    private static final byte SYMBOL = 8;
+
+    private static final byte[] CLASSES = new byte[Character.MAX_VALUE + 1];
+
+    // The letter ranges of the grammar, in pairs of first and last
+    private static final char[] LETTERS = {
+        '\u0041', '\u005a', '\u0061', '\u007a', '\u00c0', '\u00d6',
+        '\u00d8', '\u00f6', '\u00f8', '\u00ff', '\u0100', '\u1fff',
+        '\u3040', '\u318f', '\u3300', '\u337f', '\u3400', '\u3d2d',
+        '\u4e00', '\u9fff', '\uf900', '\ufaff'
+    };
+
+    // The kinds of the one-character symbols, and of the two-character ones by their first and
+    // second characters, taken from the generated token manager so the two always agree
+    private static final int[] SYMBOLS = new int[128];
+    private static final int[] PAIRS = new int[128 * 128];
+
+    // The keywords, already in an identifier table, which each lexer starts from a copy of
+    private static final String[] KEYWORD_NAMES;
+    private static final int[] KEYWORD_KINDS;
+    private static final int KEYWORD_COUNT;
+
+    static {
+        for (int i = 0; i < LETTERS.length; i += 2) {
+            for (int c = LETTERS[i]; c <= LETTERS[i + 1]; c++) {
+                CLASSES[c] = LETTER;
+            }
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] = DIGIT;
+        }
+        CLASSES[' '] = CLASSES['\t'] = CLASSES['\n'] = CLASSES['\r'] = SPACE;
+        CLASSES['_'] = UNDERSCORE;
+        CLASSES['\''] = QUOTE;
+        CLASSES['"'] = DOUBLE_QUOTE;
+        CLASSES['/'] = SLASH;
+
+        String[] keywords = new String[jjstrLiteralImages.length];
+        int keywordCount = 0;
+        for (int kind = 1; kind < jjstrLiteralImages.length; kind++) {
+            String image = jjstrLiteralImages[kind];
+            if (image == null) {
+                continue;
+            } else if (CLASSES[image.charAt(0)] == LETTER) {
+                keywords[keywordCount++] = image;
+            } else if (image.length() == 1) {
+                SYMBOLS[image.charAt(0)] = kind;
+                if (CLASSES[image.charAt(0)] == OTHER) {
+                    CLASSES[image.charAt(0)] = SYMBOL;
+                }
+            } else {
+                PAIRS[image.charAt(0) * 128 + image.charAt(1)] = kind;
+            }
+        }
+
+        int capacity = 16;
+        while (capacity < keywordCount * 4) {
+            capacity *= 2;
+        }
+        KEYWORD_NAMES = new String[capacity];
+        KEYWORD_KINDS = new int[capacity];
+        KEYWORD_COUNT = keywordCount;
+        for (int i = 0; i < keywordCount; i++) {
+            int kind = 0;
+            while (!keywords[i].equals(jjstrLiteralImages[kind])) {
+                kind++;
+            }
+            int slot = keywords[i].hashCode() & (capacity - 1);
+            while (KEYWORD_NAMES[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            KEYWORD_NAMES[slot] = keywords[i];
+            KEYWORD_KINDS[slot] = kind;
+        }
+    }
+
+    private SourceStream source;
+    private char[] text;
+    private int end;
+
+    // Where scanning resumes, and the bounds of the last token scanned
+    private int position;
+    private int tokenStart;
+    private int tokenEnd;
+
+    // The identifiers and keywords seen so far, in an open-addressed table with linear probing,
+    // with the kind of each (ID for the identifiers), and the slot of the last one scanned
+    private String[] names;
+    private int[] kinds;
+    private int nameCount;
+    private int lastSlot;
+
+    /**
+     * Creates a lexer over the given source.
+     */
+    public Lexer(SourceStream source) {
+        super(source);
+        reset(source);
+    }
+
+    /**
+     * Starts over on the given stream, which must be a {@link SourceStream}.
+     */
+    @Override
+    public void ReInit(CharStream stream) {
+        if (!(stream instanceof SourceStream)) {
+            throw new IllegalArgumentException("A lexer can only read a SourceStream");
+        }
+        reset((SourceStream) stream);
+    }
+
+    @Override
+    public void ReInit(CharStream stream, int lexState) {
+        ReInit(stream);
+        SwitchTo(lexState);
+    }
+
+    private void reset(SourceStream source) {
+        this.source = source;
+        this.text = source.getText();
+        this.end = source.getEnd();
+        this.position = source.getStart();
+        this.tokenStart = position;
+        this.tokenEnd = position;
+        this.names = KEYWORD_NAMES.clone();
+        this.kinds = KEYWORD_KINDS.clone();
+        this.nameCount = KEYWORD_COUNT;
+    }
+
+    /**
+     * Scans the next token and returns it, with its image and position filled in.
+     */
+    @Override
+    public Token getNextToken() {
+        int kind = next();
+        String image;
+        int first = tokenStart;
+        int last = tokenEnd - 1;
+        if (kind == EOF) {
+            // Like the generated token manager, place the end of the file at its last character
+            first = last = end - 1;
+            image = jjstrLiteralImages[EOF];
+        } else if (kind == ID) {
+            image = names[lastSlot];
+        } else if (jjstrLiteralImages[kind] != null) {
+            image = jjstrLiteralImages[kind];
+        } else {
+            image = new String(text, tokenStart, tokenEnd - tokenStart);
+        }
+        Token token = Token.newToken(kind, image);
+        token.beginLine = source.getLineAt(first);
+        token.beginColumn = source.getColumnAt(first);
+        token.endLine = source.getLineAt(last);
+        token.endColumn = source.getColumnAt(last);
+        return token;
+    }
+
+    /**
+     * Scans the next token, returning its kind, which is EOF at the end of the source.  The
+     * token's bounds are then given by {@link #getTokenStart()} and {@link #getTokenEnd()}.
+     *
+     * @throws TokenMgrError if no token starts at the next non-blank character
+     */
+    public int next() {
+        char[] text = this.text;
+        int p = position;
+        while (p < end) {
+            char c = text[p];
+            switch (CLASSES[c]) {
+            case SPACE:
+                p++;
+                break;
+            case LETTER:
+                return identifier(p);
+            case DIGIT:
+                return number(p);
+            case QUOTE:
+                return charLiteral(p);
+            case DOUBLE_QUOTE:
+                return stringLiteral(p);
+            case SLASH:
+                if (p + 1 < end && text[p + 1] == '/') {
+                    // A comment runs to the end of the line, but needs a line break to end it;
+                    // without one the slashes are two division operators
+                    int q = p + 2;
+                    while (q < end && text[q] != '\n' && text[q] != '\r') {
+                        q++;
+                    }
+                    if (q < end) {
+                        p = q + 1;
+                        break;
+                    }
+                }
+                return symbol(p);
+            case SYMBOL:
+                return symbol(p);
+            default:
+                throw error(p, p);
+            }
+        }
+        return found(EOF, end, end);
+    }
+
+    /**
+     * Returns the offset in the source text of the first character of the last token scanned.
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the offset in the source text just past the last token scanned.
+     */
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    private int found(int kind, int start, int end) {
+        tokenStart = start;
+        tokenEnd = end;
+        position = end;
+        return kind;
+    }
+
+    private int identifier(int p) {
+        char[] text = this.text;
+        int q = p;
+        int hash = 0;
+        for (byte kind; q < end
+                && ((kind = CLASSES[text[q]]) == LETTER || kind == DIGIT || kind == UNDERSCORE);
+                q++) {
+            hash = 31 * hash + text[q];
+        }
+
+        // Find the name in the table, adding it if it is new
+        int mask = names.length - 1;
+        int slot = hash & mask;
+        for (String name; (name = names[slot]) != null; slot = (slot + 1) & mask) {
+            if (name.hashCode() == hash && matches(name, p, q)) {
+                lastSlot = slot;
+                return found(kinds[slot], p, q);
+            }
+        }
+        names[slot] = new String(text, p, q - p);
+        kinds[slot] = ID;
+        lastSlot = slot;
+        if (++nameCount * 2 > names.length) {
+            grow();
+        }
+        return found(ID, p, q);
+    }
+
+    private boolean matches(String name, int p, int q) {
+        if (name.length() != q - p) {
+            return false;
+        }
+        for (int i = 0; p < q; i++, p++) {
+            if (name.charAt(i) != text[p]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the identifier table, keeping track of where the last name scanned went.
+     */
+    private void grow() {
+        String last = names[lastSlot];
+        String[] oldNames = names;
+        int[] oldKinds = kinds;
+        names = new String[oldNames.length * 2];
+        kinds = new int[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = oldNames[i].hashCode() & mask;
+                while (names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                names[slot] = oldNames[i];
+                kinds[slot] = oldKinds[i];
+                if (oldNames[i] == last) {
+                    lastSlot = slot;
+                }
+            }
+        }
+    }
+
+    private int number(int p) {
+        char[] text = this.text;
+        int q = digits(p);
+        if (q == end || text[q] != '.') {
+            return found(INTLIT, p, q);
+        }
+        q = digits(q + 1);
+
+        // The exponent is only part of the literal if it is complete
+        if (q < end && (text[q] == 'e' || text[q] == 'E')) {
+            int r = q + 1;
+            if (r < end && (text[r] == '+' || text[r] == '-')) {
+                r++;
+            }
+            if (r < end && text[r] >= '0' && text[r] <= '9') {
+                q = digits(r);
+            }
+        }
+        return found(FLOATLIT, p, q);
+    }
+
+    private int digits(int p) {
+        while (p < end && text[p] >= '0' && text[p] <= '9') {
+            p++;
+        }
+        return p;
+    }
+
+    private int charLiteral(int p) {
+        int q = character(p, p + 1, '\'');
+        if (q == end) {
+            throw error(p, end - 1);
+        } else if (text[q] != '\'') {
+            throw error(p, q);
+        }
+        return found(CHARLIT, p, q + 1);
+    }
+
+    private int stringLiteral(int p) {
+        int q = p + 1;
+        while (true) {
+            if (q == end) {
+                throw error(p, end - 1);
+            } else if (text[q] == '"') {
+                return found(STRINGLIT, p, q + 1);
+            }
+            q = character(p, q, '"');
+        }
+    }
+
+    /**
+     * Scans one character or escape sequence, at q, of the character or string literal starting
+     * at p, returning the offset just past it.
+     */
+    private int character(int p, int q, char quote) {
+        char[] text = this.text;
+        if (q == end) {
+            throw error(p, end - 1);
+        }
+        char c = text[q];
+        if (c != '\\') {
+            if (c == quote || c <= '\u001f' || (c >= '\u007f' && c <= '\u009f')) {
+                throw error(p, q);
+            }
+            return q + 1;
+        }
+        if (++q == end) {
+            throw error(p, end - 1);
+        }
+        c = text[q];
+        if (c == 'n' || c == 't' || c == '\\' || c == '\'' || c == '"') {
+            return q + 1;
+        } else if (!isHex(c)) {
+            throw error(p, q);
+        }
+
+        // From one to eight hexadecimal digits and a semicolon
+        int r = q + 1;
+        while (r < end && r - q < 8 && isHex(text[r])) {
+            r++;
+        }
+        if (r == end) {
+            throw error(p, end - 1);
+        } else if (text[r] != ';') {
+            throw error(p, r);
+        }
+        return r + 1;
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+    }
+
+    private int symbol(int p) {
+        char c = text[p];
+        if (p + 1 < end && text[p + 1] < 128) {
+            int kind = PAIRS[c * 128 + text[p + 1]];
+            if (kind != 0) {
+                return found(kind, p, p + 2);
+            }
+        }
+        return found(SYMBOLS[c], p, p + 1);
+    }
+
+    /**
+     * Returns the error the generated token manager reports when it is scanning a token starting
+     * at p, and reads the character at stop, or reaches the end of the source after reading it,
+     * without having matched anything.
+     */
+    private TokenMgrError error(int p, int stop) {
+        int line = source.getLineAt(stop);
+        int column = source.getColumnAt(stop);
+        char c = text[stop];
+        boolean eofSeen = stop == end - 1;
+        String after;
+        if (eofSeen) {
+            after = stop == p ? "" : new String(text, p, stop - p + 1);
+            if (c == '\n' || c == '\r') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        } else {
+            after = stop == p ? "" : new String(text, p, stop - p);
+        }
+        return new TokenMgrError(eofSeen, DEFAULT, line, column, after, c,
+            TokenMgrError.LEXICAL_ERROR);
+    }
+}
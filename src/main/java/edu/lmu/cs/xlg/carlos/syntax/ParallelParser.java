@@ -0,0 +1,248 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.entities.Statement;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.Tasks;
+
+/**
+ * Parses the top-level statements of a large program concurrently.
+ *
+ * A program is a sequence of statements, so it can be cut into pieces between two of its
+ * top-level statements and the pieces parsed on their own.  The places to cut are found by a
+ * quick scan of the characters that only keeps track of nesting, and of string literals,
+ * character literals and comments, so that it is not fooled by what is in them.  A semicolon
+ * outside of any brackets ends a top-level statement, and so does a closing brace that brings
+ * the nesting back to the top level, if it is followed by a word other than
+ * <code>else</code>.  Where the scan cannot be sure, as after a brace followed by anything
+ * else, it just does not cut.
+ *
+ * Each piece is parsed by a parser of its own, on the given threads, with a registry forked
+ * from the current one, and the statements are put together in source order after the
+ * registries have been merged, so the program and the ids of its entities are the same as
+ * with a single parser.  If any piece fails to parse, the pieces are thrown away and the whole
+ * program parsed again with a single parser, so syntax errors are reported exactly as they
+ * would be without the pieces; this also covers the cuts a scan of an ill-formed program may
+ * get wrong.  The other pieces are not waited for: those not yet started are skipped, and
+ * those being parsed give up within a few hundred tokens.  Still, a program with a syntax error
+ * costs the concurrent parse up to the failure plus a whole parse on one thread, so it takes
+ * up to about twice as long as with a single parser.
+ *
+ * Cutting a program replaces lexing it on a thread of its own, as a {@link PipelinedLexer}
+ * does: the parser of each piece lexes its piece itself, and the pieces already keep every
+ * thread busy.
+ */
+public class ParallelParser {
+
+    // The least number of characters in a piece; smaller programs are not cut at all
+    private static final int PIECE_SIZE = 1 << 16;
+
+    /**
+     * Parses a whole program from the given source, logging any syntax error and returning
+     * null in that case.  Programs too small to cut, or parsed without a registry attached, are
+     * parsed by a single parser from the {@link ParserPool}.
+     */
+    public static Program parse(SourceStream source, Log log, ExecutorService executor) {
+        EntityRegistry registry = EntityRegistry.current();
+        List<SourceStream> pieces = split(source, PIECE_SIZE);
+        if (registry == null || pieces.size() < 2) {
+            return ParserPool.parse(source, log);
+        }
+
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<EntityRegistry> registries = new ArrayList<EntityRegistry>();
+        List<Callable<List<Statement>>> tasks = new ArrayList<Callable<List<Statement>>>();
+        for (final SourceStream piece: pieces) {
+            final EntityRegistry forked = registry.fork();
+            registries.add(forked);
+            tasks.add(new Callable<List<Statement>>() {
+                public List<Statement> call() {
+                    if (failed.get()) {
+                        return null;
+                    }
+                    EntityRegistry previous = forked.attach();
+                    try {
+                        return new Parser(new PieceLexer(piece, failed)).parseStatements();
+                    } catch (TokenMgrError e) {
+                        failed.set(true);
+                        return null;
+                    } catch (ParseException e) {
+                        failed.set(true);
+                        return null;
+                    } finally {
+                        EntityRegistry.restore(previous);
+                    }
+                }
+            });
+        }
+
+        List<List<Statement>> results = Tasks.runAll(executor, tasks);
+
+        if (failed.get()) {
+            // The forked registries are dropped, so the pieces' entities never get ids
+            return ParserPool.parse(source, log);
+        }
+        List<Statement> statements = new ArrayList<Statement>();
+        for (int i = 0; i < results.size(); i++) {
+            registry.merge(registries.get(i));
+            statements.addAll(results.get(i));
+        }
+        return new Program(statements);
+    }
+
+    /**
+     * Cuts a source into pieces of at least the given size, each ending just after a top-level
+     * statement, except the last, which has the rest of the source.  Since a piece must have a
+     * statement in it, a rest with only spaces and comments goes with the piece before.  The
+     * pieces share the source's characters.
+     */
+    static List<SourceStream> split(SourceStream source, int size) {
+        char[] text = source.getText();
+        int end = source.getEnd();
+        List<SourceStream> pieces = new ArrayList<SourceStream>();
+        int pieceStart = source.getStart();
+        int previousStart = pieceStart;
+        int depth = 0;
+        boolean blank = true;
+        for (int i = pieceStart; i < end; i++) {
+            boolean cut = false;
+            switch (text[i]) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                continue;
+            case '"':
+            case '\'':
+                i = skipLiteral(text, i, end);
+                break;
+            case '/':
+                if (i + 1 < end && text[i + 1] == '/') {
+                    i = skipComment(text, i, end);
+                    continue;
+                }
+                break;
+            case '(':
+            case '[':
+            case '{':
+                depth++;
+                break;
+            case ')':
+            case ']':
+                depth--;
+                break;
+            case '}':
+                depth--;
+                cut = depth == 0 && startsStatement(text, i + 1, end);
+                break;
+            case ';':
+                cut = depth == 0;
+                break;
+            default:
+                break;
+            }
+            blank = false;
+            if (cut && i + 1 - pieceStart >= size) {
+                pieces.add(piece(text, pieceStart, i + 1));
+                previousStart = pieceStart;
+                pieceStart = i + 1;
+                blank = true;
+            }
+        }
+        if (!blank || pieces.isEmpty()) {
+            pieces.add(piece(text, pieceStart, end));
+        } else if (pieceStart < end) {
+            pieces.set(pieces.size() - 1, piece(text, previousStart, end));
+        }
+        return pieces;
+    }
+
+    private static SourceStream piece(char[] text, int start, int end) {
+        return new SourceStream(CharBuffer.wrap(text, start, end - start));
+    }
+
+    /**
+     * Returns the index of the quote that closes the string or character literal whose opening
+     * quote is at the given index, or of the line break or last character at which the literal
+     * is cut short, making it a lexical error.
+     */
+    private static int skipLiteral(char[] text, int i, int end) {
+        char quote = text[i];
+        while (++i < end) {
+            char c = text[i];
+            if (c == '\\' && i + 1 < end) {
+                c = text[++i];
+            } else if (c == quote) {
+                return i;
+            }
+            if (c == '\n' || c == '\r') {
+                return i;
+            }
+        }
+        return end - 1;
+    }
+
+    /**
+     * Returns the index of the last character of the comment that starts at the given index,
+     * not counting the line break that ends it.
+     */
+    private static int skipComment(char[] text, int i, int end) {
+        while (i + 1 < end && text[i + 1] != '\n' && text[i + 1] != '\r') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns whether the first token at or after the given index is a word other than
+     * <code>else</code>, and so starts a new statement if the one before has ended.
+     */
+    private static boolean startsStatement(char[] text, int i, int end) {
+        while (i < end) {
+            char c = text[i];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                i++;
+            } else if (c == '/' && i + 1 < end && text[i + 1] == '/') {
+                i = skipComment(text, i, end) + 1;
+            } else {
+                return Character.isLetter(c)
+                    && !new String(text, i, Math.min(4, end - i)).equals("else");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The lexer of a piece, which gives up, ending the parse of its piece, once another piece
+     * has failed to parse.  It looks only every so many tokens, to keep the cost of looking
+     * small.
+     */
+    static class PieceLexer extends Lexer {
+        private static final int CHECK_INTERVAL = 256;
+
+        private final AtomicBoolean failed;
+        private int count;
+
+        PieceLexer(SourceStream piece, AtomicBoolean failed) {
+            super(piece);
+            this.failed = failed;
+        }
+
+        @Override
+        public Token getNextToken() {
+            if (++count % CHECK_INTERVAL == 0 && failed.get()) {
+                throw new TokenMgrError("Another piece failed to parse",
+                    TokenMgrError.LEXICAL_ERROR);
+            }
+            return super.getNextToken();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import java.nio.CharBuffer;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * Parsers kept for reuse, one per thread.
+ *
+ * A new parser allocates a token manager with its state tables, the lookahead bookkeeping and
+ * the expected-token buffers used for error messages.  Parsing many small programs on the same
+ * threads, as the batch compiler and the compile server do, spends a noticeable part of each
+ * parse on that.  A pooled parser is instead pointed at the new source with
+ * <code>ReInit</code>, which resets the same objects.  Between parses a pooled parser is
+ * pointed at an empty source, so it does not keep the last program's text and tokens alive.
+ * Pooled parsers read their tokens from a {@link Lexer} rather than from the token manager
+ * JavaCC generates.
+ *
+ * A parse that starts while the thread's parser is in use, which can only happen if parsing
+ * somehow leads to more parsing, gets a parser of its own.
+ */
+public class ParserPool {
+
+    private static final ThreadLocal<Parser> idle = new ThreadLocal<Parser>();
+
+    /**
+     * Parses a whole program from the given source with the current thread's parser, logging
+     * any syntax error and returning null in that case.
+     */
+    public static Program parse(SourceStream source, Log log) {
+        Parser parser = idle.get();
+        if (parser == null) {
+            parser = new Parser(new Lexer(source));
+        } else {
+            idle.remove();
+            parser.ReInit(source);
+        }
+        try {
+            return parser.parse(log);
+        } finally {
+            parser.ReInit(new SourceStream(CharBuffer.wrap(new char[0])));
+            idle.set(parser);
+        }
+    }
+}
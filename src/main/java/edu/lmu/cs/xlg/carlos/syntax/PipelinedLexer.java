@@ -0,0 +1,224 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.util.Allocation;
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * A token manager that lexes on a thread of its own, ahead of the parser, so that for large
+ * sources scanning and making tokens overlaps with building the syntax tree.
+ *
+ * The lexing thread runs a {@link Lexer} and puts its tokens in a bounded ring buffer, which the
+ * parser takes them from in order.  The grammar never looks more than three tokens ahead, and
+ * the parser keeps the tokens it has looked at itself, so the buffer only has to hand tokens
+ * over once.  To keep the two threads from synchronizing on every token, the lexing thread
+ * publishes its tokens a batch at a time, and the parser takes everything published whenever it
+ * runs out.  A lexical error is handed over in place of the token that could not be made, so
+ * the parser meets it exactly where it would have with the lexer on its own thread.
+ *
+ * The lexing thread ends by itself at the end of the source or at a lexical error, and is told
+ * to stop when the lexer is closed, as it must be if the parser stops early.
+ */
+public class PipelinedLexer extends ParserTokenManager {
+
+    // Below this many characters a thread costs more than it saves
+    private static final int THRESHOLD = 1 << 20;
+
+    private static final int CAPACITY = 4096;
+    private static final int BATCH = 256;
+
+    private final Token[] ring = new Token[CAPACITY];
+    private final Lexer lexer;
+
+    // The lexing thread, known to the tests so they can wait for it, and the bytes it
+    // allocated, set when it ends
+    final Thread thread;
+    private long allocated;
+
+    // Shared by the two threads, guarded by the lock.  The counts only grow; a token's index in
+    // the ring is its number modulo the capacity.
+    private final Object lock = new Object();
+    private long published;
+    private long consumed;
+    private Throwable failure;
+    private boolean closed;
+
+    // The parser's own count of tokens taken, how many it may take without asking again, and
+    // the end of file token once it has been taken
+    private long taken;
+    private long available;
+    private Token eof;
+
+    /**
+     * Creates a lexer over the given source and starts its thread.
+     */
+    public PipelinedLexer(SourceStream source) {
+        super(source);
+        lexer = new Lexer(source);
+        thread = new Thread(new Runnable() {
+            public void run() {
+                long start = Allocation.allocatedBytes();
+                try {
+                    lex();
+                } finally {
+                    allocated = Allocation.allocatedBytes() - start;
+                }
+            }
+        }, "carlos-lexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Parses a whole program from the given source, as {@link ParserPool#parse} does, lexing it
+     * on a thread of its own if it is large enough to be worth it.  The bytes the lexing thread
+     * allocates are credited to the calling thread once it has ended.
+     */
+    public static Program parse(SourceStream source, Log log) {
+        if (source.getEnd() - source.getStart() < THRESHOLD) {
+            return ParserPool.parse(source, log);
+        }
+        PipelinedLexer lexer = new PipelinedLexer(source);
+        try {
+            return new Parser(lexer).parse(log);
+        } finally {
+            lexer.close();
+            lexer.creditAllocation();
+        }
+    }
+
+    /**
+     * Waits for the lexing thread to end, which it does soon after the lexer is closed, and
+     * credits the bytes it allocated to the current thread.
+     */
+    private void creditAllocation() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Allocation.credit(allocated);
+    }
+
+    /**
+     * Returns the next token, waiting for the lexing thread if it has not made it yet.
+     */
+    @Override
+    public Token getNextToken() {
+        if (eof != null) {
+            // Past the end, keep making end of file tokens, as the other token managers do
+            Token token = Token.newToken(EOF, eof.image);
+            token.beginLine = token.endLine = eof.beginLine;
+            token.beginColumn = token.endColumn = eof.beginColumn;
+            return token;
+        }
+        if (taken == available) {
+            synchronized (lock) {
+                consumed = taken;
+                lock.notifyAll();
+                try {
+                    while (published == taken && failure == null) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Parsing interrupted");
+                }
+                available = published;
+                if (available == taken) {
+                    if (failure instanceof RuntimeException) {
+                        throw (RuntimeException) failure;
+                    } else if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw new IllegalStateException(failure);
+                }
+            }
+        }
+        Token token = ring[(int) (taken++ % CAPACITY)];
+        if (token.kind == EOF) {
+            eof = token;
+        }
+        return token;
+    }
+
+    /**
+     * A pipelined lexer reads only the source it was made with.
+     */
+    @Override
+    public void ReInit(CharStream stream) {
+        throw new UnsupportedOperationException("A pipelined lexer cannot be reused");
+    }
+
+    @Override
+    public void ReInit(CharStream stream, int lexState) {
+        ReInit(stream);
+    }
+
+    /**
+     * Stops the lexing thread, if it is still running.
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Fills the ring until the end of the source, a lexical error, or the lexer is closed.
+     */
+    private void lex() {
+        long produced = 0;
+        long limit = CAPACITY;
+        try {
+            while (true) {
+                if (produced == limit) {
+                    // The ring is full: publish and wait for the parser to take some
+                    synchronized (lock) {
+                        published = produced;
+                        lock.notifyAll();
+                        while (!closed && produced - consumed == CAPACITY) {
+                            lock.wait();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        limit = consumed + CAPACITY;
+                    }
+                }
+                Token token = lexer.getNextToken();
+                ring[(int) (produced++ % CAPACITY)] = token;
+                if (token.kind == EOF || produced % BATCH == 0) {
+                    synchronized (lock) {
+                        published = produced;
+                        lock.notifyAll();
+                        if (closed) {
+                            return;
+                        }
+                        limit = consumed + CAPACITY;
+                    }
+                    if (token.kind == EOF) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(new IllegalStateException("Lexing interrupted"), produced);
+        } catch (RuntimeException e) {
+            fail(e, produced);
+        } catch (Error e) {
+            // Including TokenMgrError, the lexical errors
+            fail(e, produced);
+        }
+    }
+
+    private void fail(Throwable e, long produced) {
+        synchronized (lock) {
+            published = produced;
+            failure = e;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * The whole text of a source file, decoded once, as the character stream the parser reads.
+ *
+ * JavaCC's own <code>SimpleCharStream</code> pulls characters from a reader a buffer at a time
+ * and records a line and column for every character it reads.  This stream instead holds all
+ * the characters in one array, so reading a character is an index increment, and taking a
+ * token's image is a single copy out of that array.  Lines and columns are worked out only
+ * when the token manager asks for them, by scanning forward from the last position asked
+ * about; since it asks in source order, the whole file is scanned once.  They come out exactly
+ * as <code>SimpleCharStream</code> computes them: lines and columns start at 1, a tab advances
+ * to the next multiple of 8, and "\r\n" is a single line break.
+ *
+ * Files are read through a channel in one go, or mapped if they are large, and decoded with a
+ * single call to the decoder.
+ */
+public class SourceStream implements CharStream {
+
+    private static final int TAB_SIZE = 8;
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final char[] text;
+    private final int start;
+    private final int end;
+
+    // The index in text of the last character read, and of the first character of the token
+    // being read, or -1 before the token's first character is read.
+    private int position;
+    private int tokenBegin = -1;
+
+    // The last position whose line and column have been computed, and what they are.
+    private int located;
+    private int line = 1;
+    private int column = 0;
+    private boolean prevCharIsCR = false;
+    private boolean prevCharIsLF = false;
+
+    /**
+     * Creates a stream over the remaining characters of the given buffer, which must not be
+     * changed while the stream is in use.
+     */
+    public SourceStream(CharBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.text = buffer.array();
+            this.start = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.text = new char[buffer.remaining()];
+            buffer.duplicate().get(text);
+            this.start = 0;
+        }
+        this.end = start + buffer.remaining();
+        this.position = start - 1;
+        this.located = start - 1;
+    }
+
+    /**
+     * Returns a stream over the contents of the given UTF-8 file.
+     */
+    public static SourceStream open(File file) throws IOException {
+        return open(file, UTF8);
+    }
+
+    /**
+     * Returns a stream over the contents of the given file in the given charset.
+     */
+    public static SourceStream open(File file, Charset charset) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // Keep reading
+                }
+                bytes.flip();
+            }
+            return decode(bytes, charset);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns a stream over the given bytes decoded in the given charset.  Malformed input is
+     * replaced, as a reader would do, rather than rejected.
+     */
+    public static SourceStream decode(ByteBuffer bytes, Charset charset) {
+        try {
+            return new SourceStream(charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(bytes));
+        } catch (CharacterCodingException e) {
+            // Cannot happen when errors are replaced
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a stream over everything the given reader produces, closing the reader.
+     */
+    public static SourceStream read(Reader reader) throws IOException {
+        try {
+            char[] chars = new char[8192];
+            int length = 0;
+            for (int n; (n = reader.read(chars, length, chars.length - length)) >= 0;) {
+                length += n;
+                if (length == chars.length) {
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+            }
+            return new SourceStream(CharBuffer.wrap(chars, 0, length));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public char readChar() throws IOException {
+        if (position + 1 == end) {
+            // Like SimpleCharStream, stay on the last character, and make it the token's start
+            // if the token has none.
+            if (tokenBegin == -1) {
+                tokenBegin = position;
+            }
+            throw new IOException();
+        }
+        return text[++position];
+    }
+
+    public char BeginToken() throws IOException {
+        tokenBegin = -1;
+        char c = readChar();
+        tokenBegin = position;
+        return c;
+    }
+
+    public void backup(int amount) {
+        position -= amount;
+    }
+
+    public String GetImage() {
+        return new String(text, tokenBegin, position - tokenBegin + 1);
+    }
+
+    public char[] GetSuffix(int len) {
+        return Arrays.copyOfRange(text, position - len + 1, position + 1);
+    }
+
+    public void Done() {
+        // Nothing to release
+    }
+
+    public int getBeginLine() {
+        locate(tokenBegin);
+        return line;
+    }
+
+    public int getBeginColumn() {
+        locate(tokenBegin);
+        return column;
+    }
+
+    public int getEndLine() {
+        locate(position);
+        return line;
+    }
+
+    public int getEndColumn() {
+        locate(position);
+        return column;
+    }
+
+    @Deprecated
+    public int getLine() {
+        return getEndLine();
+    }
+
+    @Deprecated
+    public int getColumn() {
+        return getEndColumn();
+    }
+
+    // For the lexer, which scans the characters itself and only asks the stream for positions
+
+    char[] getText() {
+        return text;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int getLineAt(int index) {
+        locate(index);
+        return line;
+    }
+
+    int getColumnAt(int index) {
+        locate(index);
+        return column;
+    }
+
+    /**
+     * Brings the line and column up to date with the character at the given index, starting
+     * over from the beginning if the index is behind the last one located, which only happens
+     * when reporting errors.
+     */
+    private void locate(int index) {
+        if (index < located) {
+            located = start - 1;
+            line = 1;
+            column = 0;
+            prevCharIsCR = false;
+            prevCharIsLF = false;
+        }
+        while (located < index) {
+            char c = text[++located];
+            column++;
+            if (prevCharIsLF) {
+                prevCharIsLF = false;
+                line++;
+                column = 1;
+            } else if (prevCharIsCR) {
+                prevCharIsCR = false;
+                if (c == '\n') {
+                    prevCharIsLF = true;
+                } else {
+                    line++;
+                    column = 1;
+                }
+            }
+            if (c == '\r') {
+                prevCharIsCR = true;
+            } else if (c == '\n') {
+                prevCharIsLF = true;
+            } else if (c == '\t') {
+                column--;
+                column += TAB_SIZE - (column % TAB_SIZE);
+            }
+        }
+    }
+}
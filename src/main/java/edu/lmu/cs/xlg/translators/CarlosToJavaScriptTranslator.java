@@ -1,15 +1,20 @@
 package edu.lmu.cs.xlg.translators;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 
 import edu.lmu.cs.xlg.carlos.entities.ArrayAggregate;
 import edu.lmu.cs.xlg.carlos.entities.AssignmentStatement;
+import edu.lmu.cs.xlg.carlos.entities.BaseEntityVisitor;
 import edu.lmu.cs.xlg.carlos.entities.Block;
 import edu.lmu.cs.xlg.carlos.entities.BooleanLiteral;
 import edu.lmu.cs.xlg.carlos.entities.BreakStatement;
@@ -29,6 +34,7 @@ import edu.lmu.cs.xlg.carlos.entities.IncrementStatement;
 import edu.lmu.cs.xlg.carlos.entities.InfixExpression;
 import edu.lmu.cs.xlg.carlos.entities.IntegerLiteral;
 import edu.lmu.cs.xlg.carlos.entities.NullLiteral;
+import edu.lmu.cs.xlg.carlos.entities.Operator;
 import edu.lmu.cs.xlg.carlos.entities.PostfixExpression;
 import edu.lmu.cs.xlg.carlos.entities.PrefixExpression;
 import edu.lmu.cs.xlg.carlos.entities.PrintStatement;
@@ -44,41 +50,119 @@ import edu.lmu.cs.xlg.carlos.entities.StructType;
 import edu.lmu.cs.xlg.carlos.entities.SubscriptedVariable;
 import edu.lmu.cs.xlg.carlos.entities.Type;
 import edu.lmu.cs.xlg.carlos.entities.Variable;
-import edu.lmu.cs.xlg.carlos.entities.VariableExpression;
 import edu.lmu.cs.xlg.carlos.entities.WhileStatement;
+import edu.lmu.cs.xlg.util.Tasks;
 
 /**
  * A translator from Carlos semantic graphs to JavaScript.
+ *
+ * The top-level statements of a program can be translated concurrently, each by a translator of
+ * its own writing to a buffer, with the buffers then written out in order.  The output is the
+ * same as when translating them one after another.  A translator is used by one thread at a
+ * time.
  */
 public class CarlosToJavaScriptTranslator {
 
+    private static final int INDENT_PADDING = 4;
+
     private PrintWriter writer;
-    private int indentPadding = 4;
     private int indentLevel = 0;
 
-    private ImmutableMap<Function, String> builtIns = ImmutableMap.<Function, String>builder()
-        .put(Function.ATAN, "Math.atan2")
-        .put(Function.COS, "Math.cos")
-        .put(Function.LN, "Math.log")
-        .put(Function.SIN, "Math.sin")
-        .put(Function.SQRT, "Math.sqrt")
-        .build();
-
-    private ImmutableMap<Type, String> initialValues = ImmutableMap.<Type, String>builder()
-        .put(Type.BOOLEAN, "false")
-        .put(Type.CHAR, "'\\0'")
-        .put(Type.INT, "0")
-        .put(Type.REAL, "0.0")
-        .put(Type.STRING, "\"\"")
-        .build();
+    // The quoted JavaScript property names of the fields of each struct type, indexed by slot,
+    // shared with the translators of the other top-level statements of the same program.
+    private ConcurrentMap<StructType, String[]> properties;
+
+    private static final ImmutableMap<Function, String> builtIns =
+        ImmutableMap.<Function, String>builder()
+            .put(Function.ATAN, "Math.atan2")
+            .put(Function.COS, "Math.cos")
+            .put(Function.LN, "Math.log")
+            .put(Function.SIN, "Math.sin")
+            .put(Function.SQRT, "Math.sqrt")
+            .build();
+
+    private static final ImmutableMap<Type, String> initialValues =
+        ImmutableMap.<Type, String>builder()
+            .put(Type.BOOLEAN, "false")
+            .put(Type.CHAR, "'\\0'")
+            .put(Type.INT, "0")
+            .put(Type.REAL, "0.0")
+            .put(Type.STRING, "\"\"")
+            .build();
+
+    private static final ImmutableMap<Operator, String> prefixFormats =
+        ImmutableMap.<Operator, String>builder()
+            .put(Operator.NEGATE, "-%s")
+            .put(Operator.NOT, "!%s")
+            .put(Operator.COMPLEMENT, "~%s")
+            .put(Operator.INCREMENT, "++%s")
+            .put(Operator.DECREMENT, "--%s")
+            .put(Operator.TO_STRING, "JSON.stringify(%s)")
+            .put(Operator.LENGTH, "(%s).length")
+            .put(Operator.TO_INT, "%s")
+            .put(Operator.TO_CHAR, "%s")
+            .build();
+
+    private static final ImmutableMap<Operator, String> postfixFormats =
+        ImmutableMap.<Operator, String>builder()
+            .put(Operator.INCREMENT, "%s++")
+            .put(Operator.DECREMENT, "%s--")
+            .build();
+
+    public CarlosToJavaScriptTranslator() {
+        this(new ConcurrentHashMap<StructType, String[]>());
+    }
+
+    private CarlosToJavaScriptTranslator(ConcurrentMap<StructType, String[]> properties) {
+        this.properties = properties;
+    }
 
     public void translateProgram(Program program, PrintWriter writer) {
+        translateProgram(program, writer, null);
+    }
+
+    /**
+     * Translates a program, translating its top-level statements concurrently on the given
+     * threads, or if null, one after another on this thread.
+     */
+    public void translateProgram(Program program, PrintWriter writer, ExecutorService executor) {
         this.writer = writer;
         emit("(function () {");
-        translateBlock(program);
+        if (executor == null || program.getStatements().size() < 2) {
+            translateBlock(program);
+        } else {
+            for (String text: translateConcurrently(program.getStatements(), executor)) {
+                writer.print(text);
+            }
+        }
         emit("}());");
     }
 
+    /**
+     * Returns the JavaScript for each of the given top-level statements, each translated by a
+     * translator of its own on one of the given threads.
+     */
+    private List<String> translateConcurrently(List<Statement> statements,
+            ExecutorService executor) {
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        for (final Statement s: statements) {
+            tasks.add(new Callable<String>() {
+                public String call() {
+                    StringWriter buffer = new StringWriter();
+                    CarlosToJavaScriptTranslator translator =
+                        new CarlosToJavaScriptTranslator(properties);
+                    translator.writer = new PrintWriter(buffer);
+                    translator.indentLevel = indentLevel + 1;
+                    translator.translateStatement(s);
+                    translator.writer.flush();
+                    return buffer.toString();
+                }
+            });
+        }
+
+        return Tasks.runAll(executor, tasks);
+    }
+
     private void translateBlock(Block block) {
         indentLevel++;
         for (Statement s: block.getStatements()) {
@@ -88,53 +172,98 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private void translateStatement(Statement s) {
+        s.accept(statementTranslator, null);
+    }
 
-        if (s instanceof Declaration) {
-            translateDeclaration(Declaration.class.cast(s));
+    /**
+     * Emits the JavaScript for statements, and for the declarables inside declarations.
+     */
+    private BaseEntityVisitor<Void, Void> statementTranslator =
+            new BaseEntityVisitor<Void, Void>() {
 
-        } else if (s instanceof AssignmentStatement) {
-            translateAssignmentStatement(AssignmentStatement.class.cast(s));
+        @Override
+        public Void visitDeclaration(Declaration s, Void context) {
+            s.getDeclarable().accept(this, context);
+            return null;
+        }
 
-        } else if (s instanceof IncrementStatement) {
-            translateIncrementStatement(IncrementStatement.class.cast(s));
+        @Override
+        public Void visitVariable(Variable v, Void context) {
+            translateVariableDeclaration(v);
+            return null;
+        }
 
-        } else if (s instanceof CallStatement) {
-            translateCallStatement(CallStatement.class.cast(s));
+        @Override
+        public Void visitFunction(Function f, Void context) {
+            translateFunctionDeclaration(f);
+            return null;
+        }
 
-        } else if (s instanceof BreakStatement) {
-            emit("break;");
+        @Override
+        public Void visitType(Type t, Void context) {
+            // Intentionally empty; type declarations do not get translated in JavaScript
+            return null;
+        }
 
-        } else if (s instanceof ReturnStatement) {
-            translateReturnStatement(ReturnStatement.class.cast(s));
+        @Override
+        public Void visitAssignmentStatement(AssignmentStatement s, Void context) {
+            translateAssignmentStatement(s);
+            return null;
+        }
 
-        } else if (s instanceof PrintStatement) {
-            translatePrintStatement(PrintStatement.class.cast(s));
+        @Override
+        public Void visitIncrementStatement(IncrementStatement s, Void context) {
+            translateIncrementStatement(s);
+            return null;
+        }
 
-        } else if (s instanceof IfStatement) {
-            translateIfStatement(IfStatement.class.cast(s));
+        @Override
+        public Void visitCallStatement(CallStatement s, Void context) {
+            translateCallStatement(s);
+            return null;
+        }
 
-        } else if (s instanceof WhileStatement) {
-            translateWhileStatement(WhileStatement.class.cast(s));
+        @Override
+        public Void visitBreakStatement(BreakStatement s, Void context) {
+            emit("break;");
+            return null;
+        }
 
-        } else if (s instanceof ClassicForStatement) {
-            translateClassicForStatement(ClassicForStatement.class.cast(s));
+        @Override
+        public Void visitReturnStatement(ReturnStatement s, Void context) {
+            translateReturnStatement(s);
+            return null;
+        }
 
-        } else {
-            throw new RuntimeException("Unknown statement class: " + s.getClass().getName());
+        @Override
+        public Void visitPrintStatement(PrintStatement s, Void context) {
+            translatePrintStatement(s);
+            return null;
         }
-    }
 
-    private void translateDeclaration(Declaration s) {
-        if (s.getDeclarable() instanceof Variable) {
-            translateVariableDeclaration(Variable.class.cast(s.getDeclarable()));
-        } else if (s.getDeclarable() instanceof Function) {
-            translateFunctionDeclaration(Function.class.cast(s.getDeclarable()));
-        } else if (s.getDeclarable() instanceof Type) {
-            // Intentionally empty; type declarations do not get translated in JavaScript
-        } else {
-            throw new RuntimeException("Unknown declaration: " + s.getClass().getName());
+        @Override
+        public Void visitIfStatement(IfStatement s, Void context) {
+            translateIfStatement(s);
+            return null;
         }
-    }
+
+        @Override
+        public Void visitWhileStatement(WhileStatement s, Void context) {
+            translateWhileStatement(s);
+            return null;
+        }
+
+        @Override
+        public Void visitClassicForStatement(ClassicForStatement s, Void context) {
+            translateClassicForStatement(s);
+            return null;
+        }
+
+        @Override
+        public Void visitEntity(Entity e, Void context) {
+            throw new RuntimeException("Unknown statement class: " + e.getClass().getName());
+        }
+    };
 
     private void translateVariableDeclaration(Variable v) {
         String initializer;
@@ -232,38 +361,100 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private String translateExpression(Expression e) {
-        if (e instanceof IntegerLiteral) {
-            return IntegerLiteral.class.cast(e).getValue().toString();
-        } else if (e instanceof CharLiteral) {
-            return CharLiteral.class.cast(e).getValue().toString();
-        } else if (e instanceof RealLiteral) {
-            return RealLiteral.class.cast(e).getValue().toString();
-        } else if (e instanceof NullLiteral) {
+        return e.accept(expressionTranslator, null);
+    }
+
+    /**
+     * Produces the JavaScript text of expressions.
+     */
+    private BaseEntityVisitor<String, Void> expressionTranslator =
+            new BaseEntityVisitor<String, Void>() {
+
+        @Override
+        public String visitIntegerLiteral(IntegerLiteral e, Void context) {
+            return e.getValue().toString();
+        }
+
+        @Override
+        public String visitCharLiteral(CharLiteral e, Void context) {
+            return e.getValue().toString();
+        }
+
+        @Override
+        public String visitRealLiteral(RealLiteral e, Void context) {
+            return e.getValue().toString();
+        }
+
+        @Override
+        public String visitNullLiteral(NullLiteral e, Void context) {
             return "null";
-        } else if (e == BooleanLiteral.TRUE) {
-            return "true";
-        } else if (e == BooleanLiteral.FALSE) {
-            return "false";
-        } else if (e instanceof StringLiteral) {
-            return translateStringLiteral(StringLiteral.class.cast(e));
-        } else if (e instanceof ArrayAggregate) {
-            return translateArrayAggregate(ArrayAggregate.class.cast(e));
-        } else if (e instanceof StructAggregate) {
-            return translateStructAggregate(StructAggregate.class.cast(e));
-        } else if (e instanceof EmptyArray) {
-            return translateEmptyArray(EmptyArray.class.cast(e));
-        } else if (e instanceof PrefixExpression) {
-            return translatePrefixExpression(PrefixExpression.class.cast(e));
-        } else if (e instanceof PostfixExpression) {
-            return translatePostfixExpression(PostfixExpression.class.cast(e));
-        } else if (e instanceof InfixExpression) {
-            return translateInfixExpression(InfixExpression.class.cast(e));
-        } else if (e instanceof VariableExpression) {
-            return translateVariableExpression(VariableExpression.class.cast(e));
-        } else {
+        }
+
+        @Override
+        public String visitBooleanLiteral(BooleanLiteral e, Void context) {
+            return e == BooleanLiteral.TRUE ? "true" : "false";
+        }
+
+        @Override
+        public String visitStringLiteral(StringLiteral e, Void context) {
+            return translateStringLiteral(e);
+        }
+
+        @Override
+        public String visitArrayAggregate(ArrayAggregate e, Void context) {
+            return translateArrayAggregate(e);
+        }
+
+        @Override
+        public String visitStructAggregate(StructAggregate e, Void context) {
+            return translateStructAggregate(e);
+        }
+
+        @Override
+        public String visitEmptyArray(EmptyArray e, Void context) {
+            return translateEmptyArray(e);
+        }
+
+        @Override
+        public String visitPrefixExpression(PrefixExpression e, Void context) {
+            return translatePrefixExpression(e);
+        }
+
+        @Override
+        public String visitPostfixExpression(PostfixExpression e, Void context) {
+            return translatePostfixExpression(e);
+        }
+
+        @Override
+        public String visitInfixExpression(InfixExpression e, Void context) {
+            return translateInfixExpression(e);
+        }
+
+        @Override
+        public String visitSimpleVariableReference(SimpleVariableReference v, Void context) {
+            return variable(v.getReferent());
+        }
+
+        @Override
+        public String visitSubscriptedVariable(SubscriptedVariable v, Void context) {
+            return translateSubscriptedVariable(v);
+        }
+
+        @Override
+        public String visitDottedVariable(DottedVariable v, Void context) {
+            return translateDottedVariable(v);
+        }
+
+        @Override
+        public String visitCallExpression(CallExpression e, Void context) {
+            return translateCallExpression(e);
+        }
+
+        @Override
+        public String visitEntity(Entity e, Void context) {
             throw new RuntimeException("Unknown entity class: " + e.getClass().getName());
         }
-    }
+    };
 
     private String translateStringLiteral(StringLiteral s) {
         StringBuilder result = new StringBuilder("\"");
@@ -281,29 +472,19 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private String translatePrefixExpression(PrefixExpression e) {
-        String op = e.getOp();
-        String operand = translateExpression(e.getOperand());
-        if ("!~-".indexOf(op) >= 0 || "++".equals(op) || "--".equals(op)) {
-            return String.format("%s%s", op, operand);
-        } else if ("string".equals(e.getOp())) {
-            return String.format("JSON.stringify(%s)", operand);
-        } else if ("length".equals(op)) {
-            return String.format("(%s).length", operand);
-        } else if ("int".equals(op) || "char".equals(op)) {
-            return operand;
-        } else {
+        String format = prefixFormats.get(e.getOp());
+        if (format == null) {
             throw new RuntimeException("Unknown prefix operator: " + e.getOp());
         }
+        return String.format(format, translateExpression(e.getOperand()));
     }
 
     private String translatePostfixExpression(PostfixExpression e) {
-        String op = e.getOp();
-        String operand = translateExpression(e.getOperand());
-        if ("++".equals(op) || "--".equals(op)) {
-            return String.format("%s%s", operand, op);
-        } else {
+        String format = postfixFormats.get(e.getOp());
+        if (format == null) {
             throw new RuntimeException("Unknown postfix operator: " + e.getOp());
         }
+        return String.format(format, translateExpression(e.getOperand()));
     }
 
     private String translateInfixExpression(InfixExpression e) {
@@ -326,38 +507,23 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private String translateStructAggregate(StructAggregate e) {
-        Iterator<StructField> fields = StructType.class.cast(e.getType()).getFields().iterator();
-        Iterator<Expression> values = e.getArgs().iterator();
+        String[] fields = properties(StructType.class.cast(e.getType()));
         List<String> pairs = new ArrayList<String>();
-        while (fields.hasNext() && values.hasNext()) {
-            pairs.add(property(fields.next().getName()) + ": " + translateExpression(values.next()));
+        for (int i = 0; i < fields.length && i < e.getArgs().size(); i++) {
+            pairs.add(fields[i] + ": " + translateExpression(e.getArgs().get(i)));
         }
         return "{" + Joiner.on(", ").join(pairs) + "}";
     }
 
-    private String translateVariableExpression(VariableExpression v) {
-        if (v instanceof SimpleVariableReference) {
-            return variable(SimpleVariableReference.class.cast(v).getReferent());
-        } else if (v instanceof SubscriptedVariable) {
-            return translateSubscriptedVariable(SubscriptedVariable.class.cast(v));
-        } else if (v instanceof DottedVariable) {
-            return translateDottedVariable(DottedVariable.class.cast(v));
-        } else if (v instanceof CallExpression) {
-            return translateCallExpression(CallExpression.class.cast(v));
-        } else {
-            throw new RuntimeException("Unknown variable expression class: " + v.getClass().getName());
-        }
-    }
-
     private String translateSubscriptedVariable(SubscriptedVariable v) {
-        String sequence = translateVariableExpression(v.getSequence());
+        String sequence = translateExpression(v.getSequence());
         String index = translateExpression(v.getIndex());
         return String.format("%s[%s]", sequence, index);
     }
 
     private String translateDottedVariable(DottedVariable v) {
-        String struct = translateVariableExpression(v.getStruct());
-        String fieldName = property(v.getFieldName());
+        String struct = translateExpression(v.getStruct());
+        String fieldName = properties(StructType.class.cast(v.getStruct().getType()))[v.getSlot()];
         return String.format("%s[%s]", struct, fieldName);
     }
 
@@ -398,6 +564,24 @@ public class CarlosToJavaScriptTranslator {
         return Joiner.on(", ").join(names);
     }
 
+    /**
+     * Returns the quoted property names for the fields of the given struct type, by slot.
+     */
+    private String[] properties(StructType type) {
+        String[] result = properties.get(type);
+        if (result == null) {
+            result = new String[type.getFields().size()];
+            for (StructField field: type.getFields()) {
+                result[field.getSlot()] = property(field.getName());
+            }
+            String[] existing = properties.putIfAbsent(type, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
     private String property(String s) {
         StringBuilder result = new StringBuilder("\"");
 
@@ -415,7 +599,7 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private String variable(Entity e) {
-        return String.format("_v%d", e.getId());
+        return "_v" + e.getId();
     }
 
     /**
@@ -429,7 +613,7 @@ public class CarlosToJavaScriptTranslator {
     }
 
     private void emit(String line, Object... args) {
-        int pad = indentPadding * indentLevel;
+        int pad = INDENT_PADDING * indentLevel;
 
         if (args.length != 0) {
             line = String.format(line, args);
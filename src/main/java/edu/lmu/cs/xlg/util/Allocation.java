@@ -0,0 +1,71 @@
+package edu.lmu.cs.xlg.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Counts the bytes a thread allocates, including those allocated on its behalf by the other
+ * threads it hands work to, so that work moved onto other threads is still counted.
+ *
+ * Allocation is measured with the <code>getThreadAllocatedBytes</code> method that HotSpot adds
+ * to the thread management bean.  It is looked up reflectively, so on virtual machines without
+ * it the allocation is simply reported as unavailable (-1).  The bytes of another thread are
+ * counted only once they are credited to the thread it worked for, as {@link Tasks#runAll}
+ * does when its tasks are done.
+ */
+public class Allocation {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final Method allocatedBytesMethod = findAllocatedBytesMethod();
+
+    // The bytes allocated for each thread by other threads
+    private static final ThreadLocal<long[]> credited = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private Allocation() {
+    }
+
+    /**
+     * Returns the total number of bytes the current thread has allocated so far, together with
+     * those credited to it, or -1 if the virtual machine cannot tell.
+     */
+    public static long allocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return -1;
+        }
+        try {
+            long own = (Long) allocatedBytesMethod.invoke(threads, Thread.currentThread().getId());
+            return own + credited.get()[0];
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Counts the given number of bytes, allocated by another thread on the current thread's
+     * behalf, as allocated by the current thread.
+     */
+    public static void credit(long bytes) {
+        credited.get()[0] += bytes;
+    }
+
+    private static Method findAllocatedBytesMethod() {
+        try {
+            Class<?> hotSpotBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!hotSpotBean.isInstance(threads)) {
+                return null;
+            }
+            Method method = hotSpotBean.getMethod("getThreadAllocatedBytes", long.class);
+            method.invoke(threads, Thread.currentThread().getId());
+            return method;
+        } catch (Exception e) {
+            // Not HotSpot, or allocation measurement is switched off
+            return null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package edu.lmu.cs.xlg.util;
+
+import java.util.Arrays;
+
+/**
+ * A single message reported to a log, kept in structured form: the resource bundle key of the
+ * message, the arguments to substitute into it, and its severity.  The text of the message is
+ * not worked out until some sink actually needs it, by calling <code>Log.format()</code>.
+ */
+public final class Diagnostic {
+
+    /**
+     * How serious a diagnostic is.  Only errors are counted.
+     */
+    public static enum Severity {MESSAGE, ERROR}
+
+    private final String key;
+    private final Object[] arguments;
+    private final Severity severity;
+
+    public Diagnostic(String key, Object[] arguments, Severity severity) {
+        this.key = key;
+        this.arguments = arguments == null ? new Object[0] : arguments.clone();
+        this.severity = severity;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Object[] getArguments() {
+        return arguments.clone();
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    @Override
+    public String toString() {
+        return severity + " " + key + " " + Arrays.toString(arguments);
+    }
+}
@@ -0,0 +1,11 @@
+package edu.lmu.cs.xlg.util;
+
+/**
+ * A destination for the diagnostics reported to a log.  A sink may be called from several
+ * threads at once.  Sinks that show the text of a diagnostic get it from the log's
+ * <code>format()</code> method; sinks that don't never cause any formatting to happen.
+ */
+public interface DiagnosticSink {
+
+    void report(Diagnostic diagnostic, Log log);
+}
@@ -0,0 +1,58 @@
+package edu.lmu.cs.xlg.util;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * A sink that writes each diagnostic as a JSON object on a line of its own, for tools.  Each
+ * object has the severity, the message key, the arguments as strings, and the formatted text:
+ * <pre>
+ * {"severity":"error","key":"type_not_found","arguments":["dog"],"message":"Type dog not found"}
+ * </pre>
+ */
+public class JsonLinesSink implements DiagnosticSink {
+
+    private PrintWriter writer;
+
+    public JsonLinesSink(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    public void report(Diagnostic diagnostic, Log log) {
+        StringBuilder line = new StringBuilder("{\"severity\":");
+        appendString(line, diagnostic.getSeverity().name().toLowerCase(Locale.ENGLISH));
+        line.append(",\"key\":");
+        appendString(line, diagnostic.getKey());
+        line.append(",\"arguments\":[");
+        Object[] arguments = diagnostic.getArguments();
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendString(line, arguments[i] == null ? null : arguments[i].toString());
+        }
+        line.append("],\"message\":");
+        appendString(line, log.format(diagnostic));
+        line.append('}');
+        writer.println(line);
+    }
+
+    private static void appendString(StringBuilder out, String s) {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int)c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -4,20 +4,34 @@ import java.io.PrintWriter;
 import java.text.MessageFormat;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.lmu.cs.xlg.util.Diagnostic.Severity;
 
 /**
- * A primitive logger.  It logs (localized) messages to a print writer.
- * Some messages can be marked as error messages, and these are counted
- * as they are written.  Clients can call <code>clearErrors</code> to set
- * this count to zero and <code>getErrorCount()</code> to get the number of
- * errors logged since the last call to <code>clearErrors()</code>.
+ * A primitive logger.  It logs (localized) messages to a sink, by default
+ * one that writes them to a print writer.  Some messages can be marked as
+ * error messages, and these are counted as they are written.  Clients can
+ * call <code>clearErrors</code> to set this count to zero and
+ * <code>getErrorCount()</code> to get the number of errors logged since the
+ * last call to <code>clearErrors()</code>.
+ *
+ * <p>Messages are handed to the sink as structured diagnostics and are
+ * only formatted if the sink asks for their text, so quiet logs and sinks
+ * that just collect diagnostics do no formatting at all.  The message
+ * format for each key is parsed once and cached.  Logs may be shared by
+ * several threads.</p>
  */
 public class Log {
 
     private ResourceBundle bundle;
-    private PrintWriter writer;
-    private int errorCount = 0;
-    private boolean quiet = false;
+    private volatile DiagnosticSink sink;
+    private AtomicInteger errorCount = new AtomicInteger(0);
+    private volatile boolean quiet = false;
+    private ConcurrentMap<String, MessageFormat> formats =
+        new ConcurrentHashMap<String, MessageFormat>();
 
     /**
      * Constructs a <code>Log</code> object.
@@ -28,8 +42,38 @@ public class Log {
      * @param writer the writer to write the messages.
      */
     public Log(String resourceBundlePrefix, PrintWriter writer) {
+        this(resourceBundlePrefix, new TextSink(writer));
+    }
+
+    /**
+     * Constructs a <code>Log</code> object that reports to the given sink.
+     *
+     * @param resourceBundlePrefix the base name of the resource bundle.
+     * @param sink where to send the messages.
+     */
+    public Log(String resourceBundlePrefix, DiagnosticSink sink) {
         this.bundle = ResourceBundle.getBundle(resourceBundlePrefix);
-        this.writer = writer;
+        this.sink = sink;
+    }
+
+    /**
+     * Returns a new log that reports to the given sink, or to this log's
+     * sink if the given one is null, with this log's bundle, message
+     * formats and quietness, but with an error count of its own.  Forked
+     * logs let several compilations share one set of settings while
+     * counting their errors separately.
+     */
+    public Log fork(DiagnosticSink sink) {
+        Log result = new Log(bundle, sink == null ? this.sink : sink, formats);
+        result.quiet = quiet;
+        return result;
+    }
+
+    private Log(ResourceBundle bundle, DiagnosticSink sink,
+            ConcurrentMap<String, MessageFormat> formats) {
+        this.bundle = bundle;
+        this.sink = sink;
+        this.formats = formats;
     }
 
     /**
@@ -37,7 +81,7 @@ public class Log {
      * a log object can be reused.
      */
     public void clearErrors() {
-        errorCount = 0;
+        errorCount.set(0);
     }
 
     /**
@@ -45,7 +89,7 @@ public class Log {
      * to <code>clearErrors()</code>.
      */
     public int getErrorCount() {
-        return errorCount;
+        return errorCount.get();
     }
 
     /**
@@ -59,6 +103,21 @@ public class Log {
         this.quiet = quiet;
     }
 
+    public boolean isQuiet() {
+        return quiet;
+    }
+
+    /**
+     * Sends all further messages to the given sink.
+     */
+    public void setSink(DiagnosticSink sink) {
+        this.sink = sink;
+    }
+
+    public DiagnosticSink getSink() {
+        return sink;
+    }
+
     /**
      * Logs a non-error message.
      *
@@ -68,14 +127,7 @@ public class Log {
      * @param arguments the variable part of the message.
      */
     public void message(String key, Object... arguments) {
-        if (!quiet) {
-            try {
-                String message = bundle.getString(key);
-                writer.println(MessageFormat.format(message, arguments));
-            } catch (MissingResourceException e){
-                writer.println(key);
-            }
-        }
+        report(key, arguments, Severity.MESSAGE);
     }
 
     /**
@@ -87,8 +139,8 @@ public class Log {
      * @param arguments the variable parts of the error message.
      */
     public void error(String errorKey, Object... arguments) {
-        errorCount++;
-        message(errorKey, arguments);
+        errorCount.incrementAndGet();
+        report(errorKey, arguments, Severity.ERROR);
     }
 
     /**
@@ -104,4 +156,57 @@ public class Log {
     public void exception(Throwable t) {
         error(t.getLocalizedMessage());
     }
+
+    /**
+     * Logs a diagnostic that was reported earlier, perhaps to some other log, counting it if
+     * it is an error.
+     */
+    public void replay(Diagnostic diagnostic) {
+        if (diagnostic.getSeverity() == Severity.ERROR) {
+            error(diagnostic.getKey(), diagnostic.getArguments());
+        } else {
+            message(diagnostic.getKey(), diagnostic.getArguments());
+        }
+    }
+
+    /**
+     * Returns the text of a diagnostic: its message from the resource
+     * bundle with the arguments filled in, or just its key if the bundle
+     * has no such message.
+     */
+    public String format(Diagnostic diagnostic) {
+        MessageFormat format = formatFor(String.valueOf(diagnostic.getKey()));
+        synchronized (format) {
+            return format.format(diagnostic.getArguments());
+        }
+    }
+
+    private void report(String key, Object[] arguments, Severity severity) {
+        DiagnosticSink sink = this.sink;
+        if (!quiet && sink != null) {
+            sink.report(new Diagnostic(key, arguments, severity), this);
+        }
+    }
+
+    /**
+     * Returns the cached message format for the given key, creating it on first use.  A key
+     * missing from the bundle gets a format that shows just the key itself.
+     */
+    private MessageFormat formatFor(String key) {
+        MessageFormat format = formats.get(key);
+        if (format == null) {
+            String pattern;
+            try {
+                pattern = bundle.getString(key);
+            } catch (MissingResourceException e) {
+                pattern = "'" + key.replace("'", "''") + "'";
+            }
+            format = new MessageFormat(pattern);
+            MessageFormat existing = formats.putIfAbsent(key, format);
+            if (existing != null) {
+                format = existing;
+            }
+        }
+        return format;
+    }
 }
@@ -0,0 +1,48 @@
+package edu.lmu.cs.xlg.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sink that keeps the diagnostics, unformatted, in the order they were reported, optionally
+ * passing each one on to another sink as well.
+ */
+public class MemorySink implements DiagnosticSink {
+
+    private List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+    private DiagnosticSink next;
+
+    public MemorySink() {
+        this(null);
+    }
+
+    /**
+     * Creates a sink that keeps the diagnostics and also reports them to the given sink.
+     */
+    public MemorySink(DiagnosticSink next) {
+        this.next = next;
+    }
+
+    public void report(Diagnostic diagnostic, Log log) {
+        synchronized (this) {
+            diagnostics.add(diagnostic);
+        }
+        if (next != null) {
+            next.report(diagnostic, log);
+        }
+    }
+
+    /**
+     * Returns a copy of the diagnostics reported so far.
+     */
+    public synchronized List<Diagnostic> getDiagnostics() {
+        return new ArrayList<Diagnostic>(diagnostics);
+    }
+
+    /**
+     * Forgets all the diagnostics reported so far.
+     */
+    public synchronized void clear() {
+        diagnostics.clear();
+    }
+}
@@ -0,0 +1,69 @@
+package edu.lmu.cs.xlg.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a batch of tasks on an executor and waits for all of them.
+ */
+public class Tasks {
+
+    private Tasks() {
+    }
+
+    /**
+     * Runs the given tasks on the given executor and returns their results, in the order of the
+     * tasks.  An unchecked exception or error thrown by a task is rethrown as is; a checked one
+     * is wrapped in an IllegalStateException.  If the calling thread is interrupted while
+     * waiting, its interrupt status is set again and an IllegalStateException thrown.
+     *
+     * The bytes the tasks allocate on other threads are credited to the calling thread, so its
+     * {@link Allocation#allocatedBytes} counts the work as if it had done it itself.
+     */
+    public static <T> List<T> runAll(ExecutorService executor,
+            List<? extends Callable<T>> tasks) {
+        final Thread caller = Thread.currentThread();
+        final AtomicLong allocated = new AtomicLong();
+        List<Callable<T>> measured = new ArrayList<Callable<T>>();
+        for (final Callable<T> task: tasks) {
+            measured.add(new Callable<T>() {
+                public T call() throws Exception {
+                    if (Thread.currentThread() == caller) {
+                        return task.call();
+                    }
+                    long start = Allocation.allocatedBytes();
+                    try {
+                        return task.call();
+                    } finally {
+                        allocated.addAndGet(Allocation.allocatedBytes() - start);
+                    }
+                }
+            });
+        }
+
+        List<T> results = new ArrayList<T>();
+        try {
+            List<Future<T>> futures = executor.invokeAll(measured);
+            Allocation.credit(allocated.get());
+            for (Future<T> future: futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tasks");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,19 @@
+package edu.lmu.cs.xlg.util;
+
+import java.io.PrintWriter;
+
+/**
+ * A sink that writes the text of each diagnostic on a line of its own.
+ */
+public class TextSink implements DiagnosticSink {
+
+    private PrintWriter writer;
+
+    public TextSink(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    public void report(Diagnostic diagnostic, Log log) {
+        writer.println(log.format(diagnostic));
+    }
+}
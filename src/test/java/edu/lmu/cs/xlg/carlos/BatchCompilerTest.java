@@ -0,0 +1,74 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a batch writes JavaScript only for the files that compile, with and without a
+ * cache, so that failed compilations leave no files behind.
+ */
+public class BatchCompilerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesJavaScriptOnlyForGoodFiles() throws IOException {
+        List<File> files = sources();
+        List<BatchCompiler.Result> results = new BatchCompiler("-js", 2).compile(files);
+        assertOnlyGoodFileWritten(files, results);
+    }
+
+    @Test
+    public void writesJavaScriptOnlyForGoodFilesWithACache() throws IOException {
+        List<File> files = sources();
+        BatchCompiler batch = new BatchCompiler("-js", 2);
+        batch.setCache(new BuildCache(folder.newFolder("cache")));
+
+        // Once to fill the cache, and again to take everything from it
+        assertOnlyGoodFileWritten(files, batch.compile(files));
+        for (File file: files) {
+            new File(file.getPath() + ".js").delete();
+        }
+        assertOnlyGoodFileWritten(files, batch.compile(files));
+    }
+
+    private List<File> sources() throws IOException {
+        return Arrays.asList(write("good.carlos", "print(1);\n"),
+            write("bad.carlos", "print(x);\n"));
+    }
+
+    private static void assertOnlyGoodFileWritten(List<File> files,
+            List<BatchCompiler.Result> results) {
+        assertEquals(0, results.get(0).getErrors().size());
+        assertEquals(1, results.get(1).getErrors().size());
+        assertTrue(new File(files.get(0).getPath() + ".js").length() > 0);
+        assertFalse(new File(files.get(1).getPath() + ".js").exists());
+    }
+
+    private File write(String name, String text) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,133 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.lmu.cs.xlg.util.Diagnostic;
+
+/**
+ * Checks that the build cache stays within its size limit, evicting the entries used least
+ * recently, that it cleans up temporary files left behind, and that processes saving their
+ * counts at the same time do not lose any.
+ */
+public class BuildCacheTest {
+
+    private static final List<Diagnostic> NONE = Collections.<Diagnostic>emptyList();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void staysWithinItsLimit() throws IOException {
+        File directory = folder.newFolder("cache");
+        BuildCache cache = new BuildCache(directory, 10000);
+        for (int i = 0; i < 100; i++) {
+            cache.store(source(i), "-js", new byte[1000], NONE);
+            assertTrue(size(directory) <= 10000);
+        }
+        assertNotNull(cache.lookup(source(99), "-js"));
+        assertNull(cache.lookup(source(0), "-js"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws IOException {
+        File directory = folder.newFolder("cache");
+        BuildCache cache = new BuildCache(directory, 4500);
+        for (int i = 0; i < 4; i++) {
+            cache.store(source(i), "-js", new byte[1000], NONE);
+            age(directory, 10000);
+        }
+        assertNotNull(cache.lookup(source(0), "-js"));
+        cache.store(source(4), "-js", new byte[1000], NONE);
+        assertNotNull(cache.lookup(source(0), "-js"));
+        assertNull(cache.lookup(source(1), "-js"));
+        assertArrayEquals(new byte[1000], cache.lookup(source(4), "-js").getOutput());
+    }
+
+    @Test
+    public void deletesTemporaryFilesLeftBehind() throws IOException {
+        File directory = folder.newFolder("cache");
+        File stale = new File(directory, "entry1.tmp");
+        File fresh = new File(directory, "entry2.tmp");
+        write(stale, new byte[100]);
+        write(fresh, new byte[100]);
+        stale.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000);
+        new BuildCache(directory).store(source(0), "-js", new byte[10], NONE);
+        assertFalse(stale.exists());
+        assertTrue(fresh.exists());
+    }
+
+    @Test
+    public void concurrentSavesKeepAllCounts() throws Exception {
+        final File directory = folder.newFolder("cache");
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new Callable<Void>() {
+                public Void call() throws IOException {
+                    BuildCache cache = new BuildCache(directory);
+                    cache.lookup(source(0), "-js");
+                    cache.saveStatistics();
+                    return null;
+                }
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Void> future: pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(20, new BuildCache(directory).saveStatistics()[1]);
+    }
+
+    private static byte[] source(int i) {
+        return ("print(" + i + ");").getBytes(CompileServer.UTF8);
+    }
+
+    private static long size(File directory) {
+        long result = 0;
+        for (File file: directory.listFiles()) {
+            result += file.length();
+        }
+        return result;
+    }
+
+    /**
+     * Makes every file in the directory look the given number of milliseconds older.
+     */
+    private static void age(File directory, long millis) {
+        for (File file: directory.listFiles()) {
+            file.setLastModified(file.lastModified() - millis);
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.util.Log;
+
+/**
+ * Checks that the compile server answers requests it will not serve with an error, rather than
+ * failing without a response or reading whatever it is sent into memory, and that it serves
+ * only clients that know its token.
+ */
+public class CompileServerTest {
+
+    private CompileServer server;
+    private Thread serving;
+
+    @Before
+    public void start() throws IOException {
+        server = new CompileServer(0, new Log("Carlos", new PrintWriter(new StringWriter())));
+        server.setMaxSourceLength(1000);
+        server.setMaxConnections(2);
+        serving = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.serve();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        serving.start();
+    }
+
+    @After
+    public void stop() throws Exception {
+        server.shutdown();
+        serving.join(10000);
+    }
+
+    @Test(timeout = 10000)
+    public void compilesSourcesWithinTheLimit() throws IOException {
+        CompileClient.Response response = new CompileClient(server.getPort())
+            .compile("-syn", "print(1);".getBytes(CompileServer.UTF8));
+        assertEquals(0, response.getErrors());
+        assertTrue(response.getOutput().contains("PrintStatement"));
+    }
+
+    @Test(timeout = 10000)
+    public void refusesBadSourceLengths() throws IOException {
+        assertTrue(request(tokenLine() + "COMPILE -js -5\n").startsWith("ERROR "));
+        assertTrue(request(tokenLine() + "COMPILE -js 2000000000\n").startsWith("ERROR "));
+        assertTrue(request(tokenLine() + "COMPILE -js 1001\n").startsWith("ERROR "));
+        assertTrue(request(tokenLine() + "COMPILE -js five\n").startsWith("ERROR "));
+    }
+
+    @Test(timeout = 10000)
+    public void refusesRequestsWithoutTheToken() throws IOException {
+        assertEquals("ERROR Bad token", request("SHUTDOWN\n"));
+        assertEquals("ERROR Bad token", request("TOKEN 0123\nSHUTDOWN\n"));
+        try {
+            new CompileClient(server.getPort(), "0123").compile("-syn", new byte[0]);
+            fail("Expected the server to refuse a bad token");
+        } catch (IOException e) {
+            assertEquals("ERROR Bad token", e.getMessage());
+        }
+        assertTrue(request(tokenLine() + "STATS\n").startsWith("OK "));
+    }
+
+    @Test(timeout = 10000)
+    public void writesTheTokenToItsFile() throws IOException {
+        File file = CompileServer.tokenFile(server.getPort());
+        assertTrue(file.canRead());
+        assertEquals(64, CompileServer.readToken(server.getPort()).length());
+    }
+
+    @Test(timeout = 10000)
+    public void refusesConnectionsBeyondTheLimit() throws IOException {
+        Socket first = connect();
+        Socket second = connect();
+        try {
+            assertEquals("ERROR Too many connections", request(tokenLine() + "STATS\n"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void deletesTheTokenFileOnShutdown() throws Exception {
+        File file = CompileServer.tokenFile(server.getPort());
+        server.shutdown();
+        serving.join(10000);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void readsLinesUpToTheLimit() throws IOException {
+        char[] line = new char[CompileServer.MAX_LINE_LENGTH];
+        Arrays.fill(line, 'x');
+        assertEquals(new String(line), CompileServer.readLine(stream(new String(line) + "\n")));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void refusesLongerLines() throws IOException {
+        char[] line = new char[100000];
+        Arrays.fill(line, 'x');
+        CompileServer.readLine(stream(new String(line) + "\n"));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(CompileServer.UTF8));
+    }
+
+    private String tokenLine() throws IOException {
+        return "TOKEN " + CompileServer.readToken(server.getPort()) + "\n";
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getByName("127.0.0.1"), server.getPort());
+    }
+
+    /**
+     * Sends raw bytes to the server and returns the first line it answers with.
+     */
+    private String request(String text) throws IOException {
+        Socket socket = connect();
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(text.getBytes(CompileServer.UTF8));
+            out.flush();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String response = CompileServer.readLine(in);
+            return response == null ? "" : response;
+        } finally {
+            socket.close();
+        }
+    }
+}
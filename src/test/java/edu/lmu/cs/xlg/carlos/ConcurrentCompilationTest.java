@@ -0,0 +1,147 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * A stress test for compiling with one compiler on many threads at once.  Every test program
+ * is compiled with every option, first one at a time and then many times over on a pool of
+ * threads, and each concurrent compilation must produce exactly the output, the messages and
+ * the error count of the sequential one.
+ */
+public class ConcurrentCompilationTest {
+
+    private static final String[] OPTIONS = {"-syn", "-sem", "-opt", "-js"};
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 10;
+
+    private static List<File> files = TestPrograms.all();
+
+    @Test
+    public void sessionsOfOneCompilerDoNotInterfere() throws Exception {
+        final Compiler compiler = new Compiler();
+        Map<String, String> expected = new HashMap<String, String>();
+        for (File file: files) {
+            for (String option: OPTIONS) {
+                expected.put(file.getName() + option, compile(compiler, option, file));
+            }
+        }
+
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        List<String> keys = new ArrayList<String>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final File file: files) {
+                for (final String option: OPTIONS) {
+                    keys.add(file.getName() + option);
+                    tasks.add(new Callable<String>() {
+                        public String call() throws IOException {
+                            return compile(compiler, option, file);
+                        }
+                    });
+                }
+            }
+        }
+        List<String> results = runAll(tasks);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i), expected.get(keys.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void compilerMethodsWorkWithTheCurrentThreadsSession() throws Exception {
+        final Compiler compiler = new Compiler();
+        compiler.setQuiet(true);
+        Map<String, String> expected = new HashMap<String, String>();
+        for (File file: files) {
+            expected.put(file.getName(), checkInSteps(compiler, file));
+        }
+
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        List<String> keys = new ArrayList<String>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final File file: files) {
+                keys.add(file.getName());
+                tasks.add(new Callable<String>() {
+                    public String call() throws IOException {
+                        return checkInSteps(compiler, file);
+                    }
+                });
+            }
+        }
+        List<String> results = runAll(tasks);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i), expected.get(keys.get(i)), results.get(i));
+        }
+    }
+
+    /**
+     * Compiles a file in a session of its own and returns everything the compilation produced:
+     * the error count, the messages, and the output.
+     */
+    private static String compile(Compiler compiler, String option, File file)
+            throws IOException {
+        MemorySink sink = new MemorySink();
+        CompilationSession session = compiler.newSession(sink);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        session.compile(option, SourceStream.open(file), out, UTF8);
+
+        StringBuilder result = new StringBuilder();
+        result.append(session.getErrorCount()).append(" errors\n");
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            result.append(session.getLog().format(diagnostic)).append('\n');
+        }
+        return result.append(new String(out.toByteArray(), UTF8)).toString();
+    }
+
+    /**
+     * Parses, analyzes and optimizes a file one phase at a time through the compiler's own
+     * methods, returning the error count after each phase that ran.
+     */
+    private static String checkInSteps(Compiler compiler, File file) throws IOException {
+        StringBuilder result = new StringBuilder();
+        Program program = compiler.checkSyntax(SourceStream.open(file));
+        result.append(compiler.getErrorCount());
+        if (compiler.getErrorCount() == 0) {
+            compiler.checkSemantics(program);
+            result.append(' ').append(compiler.getErrorCount());
+            if (compiler.getErrorCount() == 0) {
+                compiler.optimize(program);
+                result.append(' ').append(compiler.getStats().getEntityCount());
+            }
+        }
+        return result.toString();
+    }
+
+    private static List<String> runAll(List<Callable<String>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<String> results = new ArrayList<String>();
+            for (Future<String> future: pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
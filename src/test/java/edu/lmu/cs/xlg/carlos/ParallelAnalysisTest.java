@@ -0,0 +1,75 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Checks that analyzing programs on several threads gives exactly the results of analyzing them
+ * on one: the same semantic graphs, entity ids included, the same JavaScript, and the same
+ * messages in the same order.
+ */
+public class ParallelAnalysisTest {
+
+    private static final String[] OPTIONS = {"-sem", "-opt", "-js"};
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testProgramsCompileAsWithOneThread() throws IOException {
+        for (File file: TestPrograms.all()) {
+            for (String option: OPTIONS) {
+                String source = new String(BuildCache.read(file), UTF8);
+                assertSameWithThreads(file.getName() + " " + option, option, source);
+            }
+        }
+    }
+
+    @Test
+    public void generatedProgramsCompileAsWithOneThread() throws IOException {
+        for (int errors = 0; errors <= 40; errors += 20) {
+            String source = new ProgramGenerator().functions(60).depth(3).loops(2).errors(errors)
+                .seed(errors).generate();
+            for (String option: OPTIONS) {
+                assertSameWithThreads(errors + " errors " + option, option, source);
+            }
+        }
+    }
+
+    private static void assertSameWithThreads(String message, String option, String source)
+            throws IOException {
+        String expected = compile(1, option, source);
+        for (int threads = 2; threads <= 4; threads++) {
+            assertEquals(message, expected, compile(threads, option, source));
+        }
+    }
+
+    /**
+     * Compiles the given source and returns the error count, the messages and the output.
+     */
+    private static String compile(int threads, String option, String source)
+            throws IOException {
+        Compiler compiler = new Compiler();
+        compiler.setWorkerThreads(threads);
+        MemorySink sink = new MemorySink();
+        CompilationSession session = compiler.newSession(sink);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        session.compile(option, new SourceStream(CharBuffer.wrap(source)), out, UTF8);
+
+        StringBuilder result = new StringBuilder();
+        result.append(session.getErrorCount()).append(" errors\n");
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            result.append(session.getLog().format(diagnostic)).append('\n');
+        }
+        return result.append(new String(out.toByteArray(), UTF8)).toString();
+    }
+}
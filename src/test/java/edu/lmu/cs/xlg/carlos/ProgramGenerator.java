@@ -0,0 +1,296 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates Carlos programs of any size, for stress tests and for measuring how compile time
+ * and memory grow with the size of the program.
+ *
+ * A generated program has
+ * <ul>
+ *   <li>a number of structs, each with a few fields and a reference to the previous struct;
+ *   <li>a number of functions, each taking an int and a struct, whose bodies are loops nested
+ *       to a given depth, around if statements nested to a given depth, around a given number
+ *       of assignments of arithmetic expressions with a given number of operands;
+ *   <li>a number of overloaded procedures, each declared with a given number of different
+ *       parameter lists; and
+ *   <li>top level statements calling every function and every overload.
+ * </ul>
+ * Generated programs are free of errors unless some semantic errors are asked for, in which
+ * case exactly that many statements that each cause one error (a reference to an undeclared
+ * variable) are spread over the functions, or put at the top level if there are none.  The
+ * operators and constants are chosen with a seeded random number generator, so the same
+ * settings always produce the same program.
+ *
+ * From the command line, the program is written to standard output:
+ * <pre>
+ * java edu.lmu.cs.xlg.carlos.ProgramGenerator [-structs n] [-functions n] [-procedures n]
+ *     [-overloads n] [-depth n] [-loops n] [-statements n] [-terms n] [-errors n] [-seed n]
+ * </pre>
+ */
+public class ProgramGenerator {
+
+    private static final String[] OVERLOAD_TYPES = {"int", "string", "boolean", "char"};
+    private static final String[] OVERLOAD_ARGUMENTS = {"1", "\"s\"", "true", "'c'"};
+    private static final String[] OPERATORS = {"+", "-", "*", "&", "|", "^"};
+
+    private int structs = 5;
+    private int functions = 20;
+    private int procedures = 5;
+    private int overloads = 4;
+    private int depth = 2;
+    private int loops = 1;
+    private int statements = 3;
+    private int terms = 4;
+    private int errors = 0;
+    private long seed = 0;
+
+    private Random random;
+    private StringBuilder source;
+
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            int n = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("-structs")) {
+                generator.structs(n);
+            } else if (args[i].equals("-functions")) {
+                generator.functions(n);
+            } else if (args[i].equals("-procedures")) {
+                generator.procedures(n);
+            } else if (args[i].equals("-overloads")) {
+                generator.overloads(n);
+            } else if (args[i].equals("-depth")) {
+                generator.depth(n);
+            } else if (args[i].equals("-loops")) {
+                generator.loops(n);
+            } else if (args[i].equals("-statements")) {
+                generator.statements(n);
+            } else if (args[i].equals("-terms")) {
+                generator.terms(n);
+            } else if (args[i].equals("-errors")) {
+                generator.errors(n);
+            } else if (args[i].equals("-seed")) {
+                generator.seed(n);
+            } else {
+                throw new IllegalArgumentException("Unknown setting: " + args[i]);
+            }
+        }
+        System.out.print(generator.generate());
+    }
+
+    /**
+     * Sets the number of structs, at least one.
+     */
+    public ProgramGenerator structs(int n) {
+        structs = Math.max(1, n);
+        return this;
+    }
+
+    /**
+     * Sets the number of functions, each called once from the top level.
+     */
+    public ProgramGenerator functions(int n) {
+        functions = n;
+        return this;
+    }
+
+    /**
+     * Sets the number of overloaded procedures.
+     */
+    public ProgramGenerator procedures(int n) {
+        procedures = n;
+        return this;
+    }
+
+    /**
+     * Sets the number of overloads of each overloaded procedure, at least one.  They differ in
+     * the type or the number of their parameters.
+     */
+    public ProgramGenerator overloads(int n) {
+        overloads = Math.max(1, n);
+        return this;
+    }
+
+    /**
+     * Sets how deeply if statements are nested inside the innermost loop of each function.
+     */
+    public ProgramGenerator depth(int n) {
+        depth = n;
+        return this;
+    }
+
+    /**
+     * Sets how deeply the loops of each function are nested.
+     */
+    public ProgramGenerator loops(int n) {
+        loops = n;
+        return this;
+    }
+
+    /**
+     * Sets the number of assignments in the innermost block of each function.
+     */
+    public ProgramGenerator statements(int n) {
+        statements = n;
+        return this;
+    }
+
+    /**
+     * Sets the number of operands of each generated arithmetic expression, at least one.
+     */
+    public ProgramGenerator terms(int n) {
+        terms = Math.max(1, n);
+        return this;
+    }
+
+    /**
+     * Sets the number of semantic errors the program should have.
+     */
+    public ProgramGenerator errors(int n) {
+        errors = n;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the random number generator that chooses the operators and constants.
+     */
+    public ProgramGenerator seed(long n) {
+        seed = n;
+        return this;
+    }
+
+    /**
+     * Returns the source text of a program with the current settings.
+     */
+    public String generate() {
+        random = new Random(seed);
+        source = new StringBuilder();
+
+        for (int i = 0; i < structs; i++) {
+            source.append("struct s").append(i).append(" {int a; int b; string name; s")
+                .append(i == 0 ? structs - 1 : i - 1).append(" next;}\n");
+        }
+
+        for (int i = 0; i < procedures; i++) {
+            for (int k = 0; k < overloads; k++) {
+                source.append("void g").append(i).append('(')
+                    .append(overloadList(k, OVERLOAD_TYPES, true)).append(") {}\n");
+            }
+        }
+
+        for (int i = 0; i < functions; i++) {
+            generateFunction(i, errorsIn(i));
+        }
+
+        for (int i = 0; i < functions; i++) {
+            int s = i % structs;
+            source.append("print(string(f").append(i).append('(').append(i)
+                .append(", new s").append(s).append("{").append(i).append(", ")
+                .append(s).append(", \"s").append(s).append("\", null})));\n");
+        }
+        for (int i = 0; i < procedures; i++) {
+            for (int k = 0; k < overloads; k++) {
+                source.append('g').append(i).append('(')
+                    .append(overloadList(k, OVERLOAD_ARGUMENTS, false)).append(");\n");
+            }
+        }
+        if (functions == 0) {
+            for (int j = 0; j < errors; j++) {
+                source.append("int e").append(j).append(" = undeclared").append(j).append(";\n");
+            }
+        }
+
+        String result = source.toString();
+        source = null;
+        return result;
+    }
+
+    /**
+     * Returns the parameter list of overload number k of a procedure, given the parameter types
+     * and asked for names, or a matching argument list, given arguments.  Overloads 0 to 3 take
+     * one parameter of each type, 4 to 7 take two, and so on.
+     */
+    private static String overloadList(int k, String[] words, boolean named) {
+        StringBuilder result = new StringBuilder();
+        for (int j = 0; j <= k / words.length; j++) {
+            result.append(j == 0 ? "" : ", ").append(words[k % words.length]);
+            if (named) {
+                result.append(" a").append(j);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns how many of the errors go into the function with the given number.
+     */
+    private int errorsIn(int function) {
+        return functions == 0 ? 0 : errors / functions + (function < errors % functions ? 1 : 0);
+    }
+
+    private void generateFunction(int number, int errorCount) {
+        List<String> names = new ArrayList<String>();
+        names.add("x");
+        names.add("total");
+        names.add("p.a");
+        names.add("p.b");
+
+        source.append("int f").append(number).append("(int x, s").append(number % structs)
+            .append(" p) {\n");
+        source.append("    int total = ").append(number).append(";\n");
+        String indent = "    ";
+        for (int i = 0; i < loops; i++) {
+            String counter = "i" + i;
+            source.append(indent).append("for (int ").append(counter).append(" = 0; ")
+                .append(counter).append(" < x; ").append(counter).append("++) {\n");
+            names.add(counter);
+            indent += "    ";
+        }
+        for (int i = 0; i < depth; i++) {
+            String local = "v" + i;
+            source.append(indent).append("if ((").append(expression(names)).append(") > ")
+                .append(random.nextInt(100)).append(") {\n");
+            indent += "    ";
+            source.append(indent).append("int ").append(local).append(" = ")
+                .append(expression(names)).append(";\n");
+            names.add(local);
+        }
+        for (int i = 0; i < statements; i++) {
+            source.append(indent).append("total = ").append(expression(names)).append(";\n");
+        }
+        for (int i = 0; i < errorCount; i++) {
+            source.append(indent).append("total = undeclared").append(i).append(";\n");
+        }
+        while (indent.length() > 4) {
+            indent = indent.substring(4);
+            source.append(indent).append("}\n");
+        }
+        source.append("    return total;\n");
+        source.append("}\n");
+    }
+
+    /**
+     * Returns an int expression with the configured number of operands, drawn from the given
+     * names and small constants.
+     */
+    private String expression(List<String> names) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                result.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            }
+            if (random.nextInt(4) == 0) {
+                result.append(random.nextInt(1000));
+            } else {
+                result.append(names.get(random.nextInt(names.size())));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package edu.lmu.cs.xlg.carlos;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class ProgramGeneratorTest {
+
+    @Test
+    public void generatesErrorFreePrograms() throws IOException {
+        assertThat(errorsIn(new ProgramGenerator()), is(0));
+        assertThat(errorsIn(new ProgramGenerator().structs(1).functions(1).procedures(0)), is(0));
+        assertThat(errorsIn(new ProgramGenerator().functions(50).procedures(10).overloads(12)
+            .depth(5).loops(3).statements(6).terms(10).seed(42)), is(0));
+        assertThat(errorsIn(new ProgramGenerator().functions(0).procedures(0)), is(0));
+    }
+
+    @Test
+    public void generatesTheRequestedNumberOfErrors() throws IOException {
+        assertThat(errorsIn(new ProgramGenerator().errors(1)), is(1));
+        assertThat(errorsIn(new ProgramGenerator().functions(7).errors(30)), is(30));
+        assertThat(errorsIn(new ProgramGenerator().functions(0).errors(5)), is(5));
+    }
+
+    @Test
+    public void generatesTheSameProgramForTheSameSettings() {
+        assertThat(new ProgramGenerator().seed(3).generate(),
+            is(new ProgramGenerator().seed(3).generate()));
+    }
+
+    /**
+     * Compiles a generated program all the way to JavaScript, returning the number of errors.
+     */
+    private static int errorsIn(ProgramGenerator generator) throws IOException {
+        Compiler compiler = new Compiler();
+        compiler.setQuiet(true);
+        compiler.generateJavaScript(new StringReader(generator.generate()),
+            new PrintWriter(new StringWriter()));
+        return compiler.getErrorCount();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesASettingWithoutAValue() {
+        ProgramGenerator.main(new String[] {"-functions", "3", "-seed"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesUnknownSettings() {
+        ProgramGenerator.main(new String[] {"functions", "3"});
+    }
+}
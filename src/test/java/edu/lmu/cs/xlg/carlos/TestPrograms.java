@@ -0,0 +1,61 @@
+package edu.lmu.cs.xlg.carlos;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The programs the tests compile: the ".carlos" files in the test resources directory, in
+ * order of name, and programs made by the {@link ProgramGenerator}.
+ */
+public class TestPrograms {
+
+    public static final String DIRECTORY = "src/test/resources";
+
+    private TestPrograms() {
+    }
+
+    /**
+     * Returns all the test programs.
+     */
+    public static List<File> all() {
+        return allExcept();
+    }
+
+    /**
+     * Returns the test programs with neither syntax nor semantic errors.
+     */
+    public static List<File> errorFree() {
+        return allExcept("synerror", "semerror");
+    }
+
+    /**
+     * Returns the test programs whose names start with none of the given prefixes.
+     */
+    public static List<File> allExcept(final String... prefixes) {
+        File[] files = new File(DIRECTORY).listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                if (!name.endsWith(".carlos")) {
+                    return false;
+                }
+                for (String prefix: prefixes) {
+                    if (name.startsWith(prefix)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Returns the source of a generated program with the given number of functions and the
+     * generator's other settings at their defaults.
+     */
+    public static String generated(int functions) {
+        return new ProgramGenerator().functions(functions).generate();
+    }
+}
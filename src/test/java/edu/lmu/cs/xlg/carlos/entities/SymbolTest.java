@@ -0,0 +1,33 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * Checks that a name maps to one symbol while the symbol is in use, and that the intern table
+ * lets go of symbols nothing refers to any more.
+ */
+public class SymbolTest {
+
+    @Test
+    public void sameNameGivesSameSymbol() {
+        Symbol symbol = Symbol.forName("sameNameGivesSameSymbol");
+        assertSame(symbol, Symbol.forName(new String("sameNameGivesSameSymbol")));
+        assertSame(symbol, Symbol.forName("sameNameGivesSameSymbol[][]").getComponent()
+            .getComponent());
+    }
+
+    @Test
+    public void unusedSymbolsAreDropped() {
+        WeakReference<Symbol> reference =
+            new WeakReference<Symbol>(Symbol.forName("unusedSymbolsAreDropped"));
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(reference.get());
+    }
+}
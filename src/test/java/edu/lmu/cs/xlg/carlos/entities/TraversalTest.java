@@ -0,0 +1,75 @@
+package edu.lmu.cs.xlg.carlos.entities;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TraversalTest {
+
+    private static class Recorder implements Entity.Visitor {
+        List<String> events = new ArrayList<String>();
+        public void onEntry(Entity e) {
+            events.add("+" + e.getClass().getSimpleName());
+        }
+        public void onExit(Entity e) {
+            events.add("-" + e.getClass().getSimpleName());
+        }
+    }
+
+    private static Block block(Statement... statements) {
+        List<Statement> list = new ArrayList<Statement>();
+        Collections.addAll(list, statements);
+        return new Block(list);
+    }
+
+    private static WhileStatement loop(Block body) {
+        return new WhileStatement(new IntegerLiteral("1"), body);
+    }
+
+    @Test
+    public void visitsInPreAndPostOrder() {
+        Recorder recorder = new Recorder();
+        WhileStatement loop = loop(block(new BreakStatement()));
+        new Traversal(recorder).run(block(loop));
+        assertThat(recorder.events.toString(), is("[+Block, +WhileStatement, +IntegerLiteral, "
+            + "-IntegerLiteral, +Block, +BreakStatement, -BreakStatement, -Block, "
+            + "-WhileStatement, -Block]"));
+    }
+
+    @Test
+    public void visitsSharedEntitiesOnce() {
+        Recorder recorder = new Recorder();
+        Statement shared = new BreakStatement();
+        new Traversal(recorder).run(block(shared, shared));
+        assertThat(recorder.events.size(), is(4));
+    }
+
+    @Test
+    public void restrictsAndPrunes() {
+        Recorder recorder = new Recorder();
+        WhileStatement loop = loop(block(new BreakStatement()));
+        new Traversal(recorder).restrictTo(Statement.class).pruneWith(new Traversal.Pruner() {
+            public boolean prune(Entity e) {
+                return e instanceof Expression;
+            }
+        }).run(block(loop));
+        assertThat(recorder.events.toString(),
+            is("[+WhileStatement, +BreakStatement, -BreakStatement, -WhileStatement]"));
+    }
+
+    @Test
+    public void handlesVeryDeepGraphs() {
+        Block body = block(new BreakStatement());
+        for (int i = 0; i < 100000; i++) {
+            body = block(loop(body));
+        }
+        Recorder recorder = new Recorder();
+        new Traversal(recorder).restrictTo(BreakStatement.class).run(body);
+        assertThat(recorder.events.size(), is(2));
+    }
+}
@@ -0,0 +1,93 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.TestPrograms;
+
+/**
+ * Checks that the hand-written lexer produces exactly the tokens, positions and errors of the
+ * generated token manager, on real programs and on random text full of edge cases.
+ */
+public class LexerTest {
+
+    // Characters that start, end, or break tokens, or that only some tokens may contain
+    private static final String ALPHABET = "aZe_9.0x1f+-=<>!|&/\\'\";\t\n\r n\u00e9\u0660\u0085"
+        + "\u4e00`$\u000c\u0000()[]{}";
+
+    @Test
+    public void testProgramsLexAsGenerated() throws IOException {
+        for (File file: TestPrograms.all()) {
+            SourceStream stream = SourceStream.open(file);
+            assertSameTokens(file.getName(), new String(stream.getText(), stream.getStart(),
+                stream.getEnd() - stream.getStart()));
+        }
+        assertSameTokens("generated", TestPrograms.generated(50));
+    }
+
+    @Test
+    public void literalsLexAsGenerated() {
+        String[] sources = {
+            "1 12.5 3. 4.5e10 6.7E-8 9.0e+ 1.5e 2e5 .5 1..2",
+            "'a' '\\n' '\\'' '\\\"' '\\41;' '\\1F600;' '\"' ''",
+            "\"\" \"a'b\" \"\\t\\\\\" \"\\123456789;\" \"\\12345678;\"",
+            "x // a comment\n y // another\r\n z //",
+            "'\\41", "'\\", "\"abc", "\"ab\n\"", "'ab'", "a\u000cb", "_x", "x_1 \u0660\u0661",
+            "\t\tx\r\ry\r\n\tz", "", "   ", "\n"
+        };
+        for (String source: sources) {
+            assertSameTokens(source, source);
+        }
+    }
+
+    @Test
+    public void randomTextLexesAsGenerated() {
+        Random random = new Random(2013);
+        for (int i = 0; i < 50000; i++) {
+            char[] chars = new char[random.nextInt(16)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+            String source = new String(chars);
+            assertSameTokens(source, source);
+        }
+    }
+
+    private static void assertSameTokens(String message, String source) {
+        assertEquals(message, tokens(new ParserTokenManager(stream(source))),
+            tokens(new Lexer(stream(source))));
+    }
+
+    /**
+     * Returns every token the given token manager produces, with its position, and the message
+     * of the lexical error it stops at, if any.
+     */
+    private static String tokens(ParserTokenManager tokenManager) {
+        StringBuilder result = new StringBuilder();
+        try {
+            for (Token token; (token = tokenManager.getNextToken()).kind != Parser.EOF;) {
+                append(result, token);
+            }
+            append(result, tokenManager.getNextToken());
+        } catch (TokenMgrError e) {
+            result.append(e.getMessage());
+        }
+        return result.toString();
+    }
+
+    private static void append(StringBuilder result, Token token) {
+        result.append(token.kind).append(' ').append(token.image).append(' ')
+            .append(token.beginLine).append(':').append(token.beginColumn).append('-')
+            .append(token.endLine).append(':').append(token.endColumn).append('\n');
+    }
+
+    private static SourceStream stream(String source) {
+        return new SourceStream(CharBuffer.wrap(source.toCharArray()));
+    }
+}
@@ -0,0 +1,194 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.TestPrograms;
+import edu.lmu.cs.xlg.carlos.entities.Entity;
+import edu.lmu.cs.xlg.carlos.entities.EntityRegistry;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.entities.Statement;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Checks that the pre-scan cuts programs only between top-level statements, and that parsing
+ * the pieces concurrently gives the same program, entity ids and syntax errors as parsing the
+ * whole program with one parser.
+ */
+public class ParallelParserTest {
+
+    // Several pieces' worth
+    private static final String LARGE = TestPrograms.generated(1000);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void shutDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void piecesParseToTheWholeProgram() throws IOException {
+        for (File file: TestPrograms.allExcept("synerror")) {
+            SourceStream source = SourceStream.open(file);
+            assertPiecesParseTo(file.getName(), text(source), source);
+        }
+        assertPiecesParseTo("generated", LARGE, stream(LARGE));
+    }
+
+    @Test
+    public void cutsOnlyBetweenStatements() {
+        assertPieces("int x = 1;|int y = 2;|", "int x = 1;int y = 2;");
+        assertPieces("void f() {}|struct S {int a;}|f();|", "void f() {}struct S {int a;}f();");
+        assertPieces("if x {} else {}|while y {}\n|", "if x {} else {}while y {}\n");
+        assertPieces("if x {}\n// else\n  else {}|", "if x {}\n// else\n  else {}");
+        assertPieces("for (i = 0; i < 1; i++) {}|", "for (i = 0; i < 1; i++) {}");
+        assertPieces("x = S{1, 2};|y = new int[]{3};|", "x = S{1, 2};y = new int[]{3};");
+        assertPieces("f() {} ++x;|", "f() {} ++x;");
+        assertPieces("print(\";}\", ';', '\\'', \"\\\";\");|x;|",
+            "print(\";}\", ';', '\\'', \"\\\";\");x;");
+        assertPieces("x = 1;| // a; b; }\ny = 2;|", "x = 1; // a; b; }\ny = 2;");
+        assertPieces("x;|y; // done\n|", "x;y; // done\n");
+        assertPieces("|", "");
+    }
+
+    @Test
+    public void largeProgramsParseAsWithOneParser() {
+        assertEquals(parse(LARGE, false), parse(LARGE, true));
+        assertTrue(ParallelParser.split(stream(LARGE), 1 << 16).size() > 2);
+    }
+
+    @Test
+    public void syntaxErrorsAreReportedAsWithOneParser() {
+        int first = LARGE.indexOf("\n", LARGE.length() / 5) + 1;
+        int last = LARGE.indexOf("\n", LARGE.length() * 4 / 5) + 1;
+        String[] sources = {
+            insert(LARGE, last, "int x = ;\n"),
+            insert(LARGE, last, "int x = \"unterminated;\n"),
+            insert(insert(LARGE, last, "x = ;\n"), first, "y = ;\n"),
+            insert(LARGE, first, "void f() {\n"),
+            insert(LARGE, first, "}\n"),
+            insert(LARGE, first, "// unterminated \"comment; }\n"),
+            LARGE + "int $;\n",
+            LARGE + "else {}\n"
+        };
+        for (String source: sources) {
+            assertEquals(parse(source, false), parse(source, true));
+        }
+    }
+
+    @Test
+    public void piecesGiveUpOnceAnotherHasFailed() {
+        AtomicBoolean failed = new AtomicBoolean();
+        ParallelParser.PieceLexer lexer = new ParallelParser.PieceLexer(stream(LARGE), failed);
+        lexer.getNextToken();
+        failed.set(true);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                lexer.getNextToken();
+            }
+            fail("Lexer kept going after another piece failed");
+        } catch (TokenMgrError e) {
+            assertEquals("Another piece failed to parse", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that the pieces of a source, cut wherever possible, make up the whole source, and
+     * that their statements make up the program parsed from the whole source.
+     */
+    private static void assertPiecesParseTo(String message, String text, SourceStream source) {
+        List<SourceStream> pieces = ParallelParser.split(source, 1);
+        StringBuilder joined = new StringBuilder();
+        List<Statement> statements = new ArrayList<Statement>();
+        Program whole;
+        try {
+            for (SourceStream piece: pieces) {
+                joined.append(text(piece));
+                statements.addAll(new Parser(new Lexer(piece)).parseStatements());
+            }
+            whole = new Parser(new Lexer(stream(text))).parseProgram();
+        } catch (ParseException e) {
+            throw new AssertionError(message + ": " + e.getMessage());
+        }
+        assertEquals(message, text, joined.toString());
+        assertEquals(message, tree(whole), tree(new Program(statements)));
+    }
+
+    /**
+     * Checks where a source is cut, given the pieces each followed by a bar.
+     */
+    private static void assertPieces(String expected, String source) {
+        StringBuilder actual = new StringBuilder();
+        for (SourceStream piece: ParallelParser.split(stream(source), 1)) {
+            actual.append(text(piece)).append('|');
+        }
+        assertEquals(expected, actual.toString());
+    }
+
+    /**
+     * Parses a source, with one parser or in pieces, and returns the messages, the syntax tree
+     * and the classes of the entities made, in the order of their ids.
+     */
+    private String parse(String text, boolean inPieces) {
+        MemorySink sink = new MemorySink();
+        Log log = new Log("Carlos", sink);
+        EntityRegistry registry = new EntityRegistry();
+        EntityRegistry previous = registry.attach();
+        Program program;
+        try {
+            program = inPieces ? ParallelParser.parse(stream(text), log, executor)
+                : ParserPool.parse(stream(text), log);
+        } finally {
+            EntityRegistry.restore(previous);
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            result.append(log.format(diagnostic)).append('\n');
+        }
+        if (program != null) {
+            result.append(tree(program));
+        }
+        for (int id = registry.getBase(); id < registry.getLimit(); id++) {
+            Entity entity = registry.get(id);
+            result.append(id).append(' ').append(entity.getClass().getSimpleName()).append('\n');
+        }
+        return result.toString();
+    }
+
+    private static String tree(Program program) {
+        StringWriter tree = new StringWriter();
+        program.printSyntaxTree("", "", new PrintWriter(tree));
+        return tree.toString();
+    }
+
+    private static String insert(String text, int index, String insertion) {
+        return text.substring(0, index) + insertion + text.substring(index);
+    }
+
+    private static String text(SourceStream source) {
+        return new String(source.getText(), source.getStart(), source.getEnd() - source.getStart());
+    }
+
+    private static SourceStream stream(String source) {
+        return new SourceStream(CharBuffer.wrap(source.toCharArray()));
+    }
+}
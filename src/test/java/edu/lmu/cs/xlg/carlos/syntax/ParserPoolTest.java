@@ -0,0 +1,59 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.TestPrograms;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Checks that a reused parser, reading its tokens from a lexer, parses exactly as a new parser
+ * with the generated token manager does, including after syntax errors.
+ */
+public class ParserPoolTest {
+
+    @Test
+    public void pooledParsesMatchFreshParses() throws IOException {
+        List<File> files = TestPrograms.all();
+
+        // Twice over, so every file is parsed by a parser that last parsed something else
+        for (int round = 0; round < 2; round++) {
+            for (File file: files) {
+                String fresh = parse(file, false);
+                String pooled = parse(file, true);
+                assertEquals(file.getName(), fresh, pooled);
+            }
+        }
+    }
+
+    /**
+     * Parses a file and returns the messages and the syntax tree.
+     */
+    private static String parse(File file, boolean pooled) throws IOException {
+        MemorySink sink = new MemorySink();
+        Log log = new Log("Carlos", sink);
+        SourceStream source = SourceStream.open(file);
+        Program program = pooled ? ParserPool.parse(source, log) : new Parser(source).parse(log);
+
+        StringBuilder result = new StringBuilder();
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            result.append(log.format(diagnostic)).append('\n');
+        }
+        if (program != null) {
+            StringWriter tree = new StringWriter();
+            program.printSyntaxTree("", "", new PrintWriter(tree));
+            result.append(tree);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.entities.AssignmentStatement;
+import edu.lmu.cs.xlg.carlos.entities.CallExpression;
+import edu.lmu.cs.xlg.carlos.entities.CallStatement;
+import edu.lmu.cs.xlg.carlos.entities.DottedVariable;
+import edu.lmu.cs.xlg.carlos.entities.IncrementStatement;
+import edu.lmu.cs.xlg.carlos.entities.InfixExpression;
+import edu.lmu.cs.xlg.carlos.entities.Operator;
+import edu.lmu.cs.xlg.carlos.entities.PostfixExpression;
+import edu.lmu.cs.xlg.carlos.entities.PrefixExpression;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.entities.Statement;
+import edu.lmu.cs.xlg.carlos.entities.SubscriptedVariable;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Checks the statements and expressions that the parser tells apart by their first few tokens,
+ * and that inputs which once made it backtrack heavily now parse in linear time.
+ */
+public class ParserTest {
+
+    @Test
+    public void statementsStartingWithAnIdentifier() {
+        List<Statement> statements = parse(
+            "f(1).x = 2; f(1)++; --f(1); g(1); x.y[0]++; a[b[c]] = d;").getStatements();
+
+        AssignmentStatement assignment = (AssignmentStatement) statements.get(0);
+        DottedVariable field = (DottedVariable) assignment.getLeft();
+        assertTrue(field.getStruct() instanceof CallExpression);
+
+        IncrementStatement increment = (IncrementStatement) statements.get(1);
+        assertEquals(Operator.INCREMENT, increment.getOp());
+        assertTrue(increment.getTarget() instanceof CallExpression);
+
+        IncrementStatement decrement = (IncrementStatement) statements.get(2);
+        assertEquals(Operator.DECREMENT, decrement.getOp());
+        assertTrue(decrement.getTarget() instanceof CallExpression);
+
+        CallStatement call = (CallStatement) statements.get(3);
+        assertEquals("g", call.getFunctionName());
+
+        increment = (IncrementStatement) statements.get(4);
+        assertTrue(increment.getTarget() instanceof SubscriptedVariable);
+
+        assignment = (AssignmentStatement) statements.get(5);
+        SubscriptedVariable element = (SubscriptedVariable) assignment.getLeft();
+        assertTrue(element.getIndex() instanceof SubscriptedVariable);
+    }
+
+    @Test
+    public void incrementExpressions() {
+        AssignmentStatement assignment = (AssignmentStatement) parse("x = ++a[0] - b--;")
+            .getStatements().get(0);
+        InfixExpression difference = (InfixExpression) assignment.getRight();
+        PrefixExpression prefix = (PrefixExpression) difference.getLeft();
+        assertEquals(Operator.INCREMENT, prefix.getOp());
+        assertTrue(prefix.getOperand() instanceof SubscriptedVariable);
+        PostfixExpression postfix = (PostfixExpression) difference.getRight();
+        assertEquals(Operator.DECREMENT, postfix.getOp());
+    }
+
+    @Test
+    public void bareVariableIsNotAStatement() {
+        Log log = new Log("Carlos", new MemorySink());
+        assertNull(new Parser(stream("a.b;")).parse(log));
+        assertEquals(1, log.getErrorCount());
+    }
+
+    @Test(timeout = 10000)
+    public void deeplyNestedInputsParseInLinearTime() {
+        StringBuilder chain = new StringBuilder("a");
+        for (int i = 0; i < 5000; i++) {
+            chain.append(".b[c]");
+        }
+        assertNotNull(parse(chain + " = " + chain + "; " + chain + "++;"));
+
+        assertNotNull(parse("x = " + nest("f(", ")", 200) + ";"));
+        assertNotNull(parse(nest("a[", "]", 200) + " = " + nest("a[", "]", 200) + ";"));
+        assertNotNull(parse(nest("void f() {", "}", 100)));
+    }
+
+    private static String nest(String open, String close, int depth) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            result.append(open);
+        }
+        result.append(open.endsWith("{") ? "" : "1");
+        for (int i = 0; i < depth; i++) {
+            result.append(close);
+        }
+        return result.toString();
+    }
+
+    private static Program parse(String source) {
+        Log log = new Log("Carlos", new MemorySink());
+        Program program = new Parser(stream(source)).parse(log);
+        assertEquals(0, log.getErrorCount());
+        return program;
+    }
+
+    private static SourceStream stream(String source) {
+        return new SourceStream(CharBuffer.wrap(source));
+    }
+}
@@ -0,0 +1,138 @@
+package edu.lmu.cs.xlg.carlos.syntax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.TestPrograms;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.util.Diagnostic;
+import edu.lmu.cs.xlg.util.Log;
+import edu.lmu.cs.xlg.util.MemorySink;
+
+/**
+ * Checks that parsing with the lexer on a thread of its own gives exactly the tokens, syntax
+ * trees and errors of parsing with the lexer on the parser's thread, and that closing the lexer
+ * stops its thread.
+ */
+public class PipelinedLexerTest {
+
+    // Large enough to be pipelined, and to go round the ring many times
+    private static final String LARGE = TestPrograms.generated(2500);
+
+    @Test
+    public void programsParseAsWithoutPipelining() throws IOException {
+        for (File file: TestPrograms.all()) {
+            assertEquals(file.getName(), parse(SourceStream.open(file), false),
+                parse(SourceStream.open(file), true));
+        }
+    }
+
+    @Test
+    public void largeProgramsParseAsWithoutPipelining() {
+        int middle = LARGE.indexOf("\n", LARGE.length() / 2) + 1;
+        String[] sources = {
+            LARGE,
+            LARGE.substring(0, middle) + "int x = ;\n" + LARGE.substring(middle),
+            LARGE.substring(0, middle) + "int x = \"unterminated\n" + LARGE.substring(middle),
+            LARGE + "int $;\n"
+        };
+        for (String source: sources) {
+            assertEquals(parse(stream(source), false), parse(stream(source), true));
+        }
+    }
+
+    @Test
+    public void tokensMatchTheLexer() {
+        String[] sources = {"", "x", "int x = 5; // done", "'ab'", LARGE, LARGE + "\"abc"};
+        for (String source: sources) {
+            PipelinedLexer lexer = new PipelinedLexer(stream(source));
+            try {
+                assertEquals(tokens(new Lexer(stream(source))), tokens(lexer));
+            } finally {
+                lexer.close();
+            }
+        }
+    }
+
+    @Test
+    public void closingStopsTheLexingThread() throws InterruptedException {
+        PipelinedLexer lexer = new PipelinedLexer(stream(LARGE));
+        lexer.getNextToken();
+
+        // The ring holds far fewer tokens than the source has, so the thread waits for the parser
+        assertTrue(lexer.thread.isAlive());
+        lexer.close();
+        lexer.thread.join(10000);
+        assertFalse(lexer.thread.isAlive());
+    }
+
+    /**
+     * Parses a source, with or without pipelining, and returns the messages and the syntax
+     * tree.  Small sources are pipelined too, by making the lexer directly.
+     */
+    private static String parse(SourceStream source, boolean pipelined) {
+        MemorySink sink = new MemorySink();
+        Log log = new Log("Carlos", sink);
+        Program program;
+        if (!pipelined) {
+            program = ParserPool.parse(source, log);
+        } else if (source.getEnd() - source.getStart() > 1 << 20) {
+            program = PipelinedLexer.parse(source, log);
+        } else {
+            PipelinedLexer lexer = new PipelinedLexer(source);
+            try {
+                program = new Parser(lexer).parse(log);
+            } finally {
+                lexer.close();
+            }
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (Diagnostic diagnostic: sink.getDiagnostics()) {
+            result.append(log.format(diagnostic)).append('\n');
+        }
+        if (program != null) {
+            StringWriter tree = new StringWriter();
+            program.printSyntaxTree("", "", new PrintWriter(tree));
+            result.append(tree);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns every token the given token manager produces, with its position, up to and past
+     * the end of the source, and the message of the lexical error it stops at, if any.
+     */
+    private static String tokens(ParserTokenManager tokenManager) {
+        StringBuilder result = new StringBuilder();
+        try {
+            for (Token token; (token = tokenManager.getNextToken()).kind != Parser.EOF;) {
+                append(result, token);
+            }
+            append(result, tokenManager.getNextToken());
+            append(result, tokenManager.getNextToken());
+        } catch (TokenMgrError e) {
+            result.append(e.getMessage());
+        }
+        return result.toString();
+    }
+
+    private static void append(StringBuilder result, Token token) {
+        result.append(token.kind).append(' ').append(token.image).append(' ')
+            .append(token.beginLine).append(':').append(token.beginColumn).append('-')
+            .append(token.endLine).append(':').append(token.endColumn).append('\n');
+    }
+
+    private static SourceStream stream(String source) {
+        return new SourceStream(CharBuffer.wrap(source.toCharArray()));
+    }
+}
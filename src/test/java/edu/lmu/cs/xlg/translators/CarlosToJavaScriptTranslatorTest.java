@@ -0,0 +1,60 @@
+package edu.lmu.cs.xlg.translators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import edu.lmu.cs.xlg.carlos.Compiler;
+import edu.lmu.cs.xlg.carlos.TestPrograms;
+import edu.lmu.cs.xlg.carlos.entities.Program;
+import edu.lmu.cs.xlg.carlos.syntax.SourceStream;
+
+/**
+ * Checks that translating the top-level statements of a program concurrently writes exactly the
+ * JavaScript that translating them one after another does.
+ */
+public class CarlosToJavaScriptTranslatorTest {
+
+    @Test
+    public void concurrentTranslationIsByteIdentical() throws IOException {
+        List<Program> programs = new ArrayList<Program>();
+        for (File file: TestPrograms.errorFree()) {
+            programs.add(optimize(SourceStream.open(file)));
+        }
+        programs.add(optimize(new SourceStream(CharBuffer.wrap(TestPrograms.generated(200)))));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (Program program: programs) {
+                StringWriter serial = new StringWriter();
+                new CarlosToJavaScriptTranslator().translateProgram(program,
+                    new PrintWriter(serial));
+                StringWriter concurrent = new StringWriter();
+                new CarlosToJavaScriptTranslator().translateProgram(program,
+                    new PrintWriter(concurrent), executor);
+                assertEquals(serial.toString(), concurrent.toString());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Program optimize(SourceStream source) throws IOException {
+        Compiler compiler = new Compiler();
+        compiler.setQuiet(true);
+        Program program = compiler.produceOptimizedSemanticGraph(source);
+        assertTrue(compiler.getErrorCount() == 0);
+        return program;
+    }
+}
@@ -0,0 +1,53 @@
+package edu.lmu.cs.xlg.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class LogTest {
+
+    @Test
+    public void formatsMessagesFromTheBundle() {
+        StringWriter out = new StringWriter();
+        Log log = new Log("Carlos", new PrintWriter(out, true));
+        log.error("type_not_found", "dog");
+        log.message("no such key {0} here");
+        assertThat(out.toString(), is(String.format("Type dog not found%nno such key {0} here%n")));
+        assertThat(log.getErrorCount(), is(1));
+    }
+
+    @Test
+    public void keepsDiagnosticsInMemory() {
+        MemorySink sink = new MemorySink();
+        Log log = new Log("Carlos", sink);
+        log.error("type_not_found", "dog");
+        log.message("checking_syntax");
+        assertThat(sink.getDiagnostics().size(), is(2));
+        assertThat(sink.getDiagnostics().get(0).getKey(), is("type_not_found"));
+        assertThat(sink.getDiagnostics().get(0).getSeverity(), is(Diagnostic.Severity.ERROR));
+        assertThat(log.format(sink.getDiagnostics().get(0)), is("Type dog not found"));
+    }
+
+    @Test
+    public void quietLogsCountErrorsWithoutReporting() {
+        MemorySink sink = new MemorySink();
+        Log log = new Log("Carlos", sink);
+        log.setQuiet(true);
+        log.error("type_not_found", "dog");
+        assertThat(sink.getDiagnostics().size(), is(0));
+        assertThat(log.getErrorCount(), is(1));
+    }
+
+    @Test
+    public void writesJsonLines() {
+        StringWriter out = new StringWriter();
+        Log log = new Log("Carlos", new JsonLinesSink(new PrintWriter(out, true)));
+        log.error("type_not_found", "d\"og");
+        assertThat(out.toString().trim(), is("{\"severity\":\"error\",\"key\":\"type_not_found\","
+            + "\"arguments\":[\"d\\\"og\"],\"message\":\"Type d\\\"og not found\"}"));
+    }
+}
@@ -0,0 +1,80 @@
+package edu.lmu.cs.xlg.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TasksTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void shutDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void resultsComeInTheOrderOfTheTasks() {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>() {
+                public Integer call() throws InterruptedException {
+                    Thread.sleep(10 - value);
+                    return value;
+                }
+            });
+        }
+        assertThat(Tasks.runAll(executor, tasks), is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+    }
+
+    @Test
+    public void allocationOnOtherThreadsIsCreditedToTheCaller() {
+        assumeTrue(Allocation.allocatedBytes() >= 0);
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(new Callable<Integer>() {
+                public Integer call() {
+                    return new byte[1 << 20].length;
+                }
+            });
+        }
+        long start = Allocation.allocatedBytes();
+        Tasks.runAll(executor, tasks);
+        assertThat(Allocation.allocatedBytes() - start >= 4 << 20, is(true));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void uncheckedExceptionsAreRethrown() {
+        Tasks.runAll(executor, Arrays.asList(new Callable<Void>() {
+            public Void call() {
+                throw new UnsupportedOperationException();
+            }
+        }));
+    }
+
+    @Test
+    public void checkedExceptionsAreWrapped() {
+        try {
+            Tasks.runAll(executor, Arrays.asList(new Callable<Void>() {
+                public Void call() throws IOException {
+                    throw new IOException();
+                }
+            }));
+            throw new AssertionError("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause() instanceof IOException, is(true));
+        }
+    }
+}